@@ -0,0 +1,151 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//Общая часть менеджеров, не зависящая от способа хранения задач:
+//проверка пакетов перед изменениями и размещение задач в свободные окна.
+//Наследники дают доступ к своим индексам через isStoredAs, overlapsStoredTasks и findFreeSeconds
+public abstract class AbstractTaskManager implements TaskManager {
+
+    //Шаг, на который свободное окно отступает от занятых интервалов: их границы тоже считаются занятыми
+    public static final Duration SLOT_STEP = Duration.ofMinutes(1);
+
+    //Первое свободное окно нужной длительности, начинающееся не раньше earliestStart
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime earliestStart, Duration duration) {
+        return Task.toDateTime(findFreeSeconds(slotSeconds(earliestStart), duration.toMinutes() * 60,
+                SLOT_STEP.toSeconds()));
+    }
+
+    //Ставит задачу или подзадачу в первое свободное окно и создает ее
+    @Override
+    public void scheduleTask(Task task, LocalDateTime earliestStart) {
+        checkSchedulable(task);
+
+        task.setStartTime(findFreeSlot(earliestStart, task.getDuration()));
+        if (task instanceof Subtask subtask) {
+            createSubtask(subtask);
+        } else {
+            createTask(task);
+        }
+    }
+
+    //Размещает задачи по порядку, каждую в первое свободное окно после earliestStart.
+    //Окна всего пакета рассчитываются до изменений: окно должно быть свободно и среди сохраненных задач,
+    //и среди уже размещенных задач пакета. Затем пакет создается одним createAll,
+    //поэтому он сохраняется один раз и применяется целиком или никак
+    @Override
+    public void scheduleTasks(List<? extends Task> tasks, LocalDateTime earliestStart) {
+        tasks.forEach(this::checkSchedulable);
+
+        long from = slotSeconds(earliestStart);
+        long step = SLOT_STEP.toSeconds();
+        IntervalTree<Task> planned = new IntervalTree<>();
+        List<LocalDateTime> previousStarts = new ArrayList<>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            long duration = task.getDurationMinutes() * 60;
+            //Оба поиска не уменьшают начало, поэтому чередуются, пока окно не станет свободным в обоих
+            long start = from;
+            long candidate;
+            do {
+                candidate = start;
+                start = planned.findFreeSlot(findFreeSeconds(start, duration, step), duration, step);
+            } while (start != candidate);
+            planned.add(i, start, start + duration, task);
+            previousStarts.add(task.getStartTime());
+            task.setStartTime(Task.toDateTime(start));
+        }
+
+        try {
+            createAll(tasks);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < tasks.size(); i++) {
+                tasks.get(i).setStartTime(previousStarts.get(i));
+            }
+            throw e;
+        }
+    }
+
+    private void checkSchedulable(Task task) {
+        if (task == null) {
+            throw new IllegalArgumentException("Пустую задачу нельзя разместить");
+        }
+        if (task instanceof Epic) {
+            throw new IllegalArgumentException("Время эпика рассчитывается по подзадачам");
+        }
+        if (task.getDuration() == null) {
+            throw new IllegalArgumentException("Для размещения задачи нужна длительность");
+        }
+    }
+
+    //Пустая страница с пустым курсором означает конец ленты, поэтому страница без задач не запрашивается
+    protected static void checkPageLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным: " + limit);
+        }
+    }
+
+    //Окно не может начаться раньше earliestStart, поэтому доли секунды округляются вверх
+    private static long slotSeconds(LocalDateTime earliestStart) {
+        return Task.toEpochSeconds(earliestStart) + (earliestStart.getNano() > 0 ? 1 : 0);
+    }
+
+    //Проверка пакета до любых изменений: пересечения с сохраненными задачами (кроме заменяемых пакетом)
+    //ищутся по индексу наследника, пересечения внутри пакета - одним проходом по отсортированному пакету.
+    //Возвращает id заменяемых задач
+    protected Set<Integer> validateBatch(List<? extends Task> tasks, boolean updating) {
+        Set<Integer> replacedIds = new HashSet<>();
+        List<Task> timedTasks = new ArrayList<>();
+        for (Task task : tasks) {
+            if (task == null) {
+                throw new IllegalArgumentException("Пакет содержит пустую задачу");
+            }
+            if (updating) {
+                if (!isStoredAs(task)) {
+                    throw new IllegalArgumentException("Задача " + task.getId() + " не найдена");
+                }
+                if (!replacedIds.add(task.getId())) {
+                    throw new IllegalArgumentException("Задача " + task.getId() + " повторяется в пакете");
+                }
+            } else if (task instanceof Subtask subtask && !isEpicExists(subtask.getEpicId())) {
+                throw new IllegalArgumentException("Эпик " + subtask.getEpicId() + " не найден");
+            }
+            if (!(task instanceof Epic) && task.getEndSeconds() != Task.NO_TIME) {
+                timedTasks.add(task);
+            }
+        }
+
+        for (Task task : timedTasks) {
+            if (overlapsStoredTasks(task.getStartSeconds(), task.getEndSeconds(), replacedIds)) {
+                throw new RuntimeException("Задача " + task.getTaskDescription() +
+                        " не была добавлена из-за пересечения во времени с другими задачами");
+            }
+        }
+
+        timedTasks.sort(Comparator.comparingLong(Task::getStartSeconds));
+        long maxEnd = Task.NO_TIME;
+        for (Task task : timedTasks) {
+            if (task.getStartSeconds() <= maxEnd) {
+                throw new RuntimeException("Задача " + task.getTaskDescription() +
+                        " не была добавлена из-за пересечения во времени с другими задачами пакета");
+            }
+            maxEnd = Math.max(maxEnd, task.getEndSeconds());
+        }
+        return replacedIds;
+    }
+
+    //Задача сохранена с тем же типом, а подзадача - в том же эпике
+    protected abstract boolean isStoredAs(Task task);
+
+    //Пересекается ли [start, end] с сохраненными задачами, не считая excludedIds
+    protected abstract boolean overlapsStoredTasks(long start, long end, Set<Integer> excludedIds);
+
+    //Самое раннее время t >= from в секундах эпохи, при котором [t, t + duration] свободен;
+    //окно отступает от концов занятых интервалов на step
+    protected abstract long findFreeSeconds(long from, long duration, long step);
+}
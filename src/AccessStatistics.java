@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Приблизительная статистика обращений к задачам с фиксированным объемом памяти.
+//Частоты оцениваются скетчем Count-Min (depth строк по width счетчиков), самые частые id
+//хранятся в таблице из capacity элементов. Каждые decayInterval обращений все счетчики
+//делятся пополам, поэтому старые обращения постепенно перестают влиять на результат
+public class AccessStatistics {
+
+    public static final int DEFAULT_WIDTH = 1024;
+    public static final int DEFAULT_DEPTH = 4;
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final int DEFAULT_DECAY_INTERVAL = 100_000;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F, 0x165667B1, 0xD3A2646C};
+
+    private final int width;
+    private final int depth;
+    private final AtomicIntegerArray counters;
+    private final AtomicLong events;
+    private final int decayInterval;
+
+    //Таблица самых частых id: обновляется только под lock, при конкуренции обновление пропускается
+    private final ReentrantLock lock;
+    private final int[] hotIds;
+    private final int[] hotCounts;
+    private final IntObjectMap<Integer> slotsById;
+    private int hotSize;
+    private int minSlot;
+
+    public AccessStatistics() {
+        this(DEFAULT_WIDTH, DEFAULT_DEPTH, DEFAULT_CAPACITY, DEFAULT_DECAY_INTERVAL);
+    }
+
+    public AccessStatistics(int width, int depth, int capacity, int decayInterval) {
+        if (width <= 0 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Ширина скетча должна быть степенью двойки");
+        }
+        if (depth <= 0 || depth > SEEDS.length || capacity <= 0 || decayInterval <= 0) {
+            throw new IllegalArgumentException("Некорректные параметры статистики");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new AtomicIntegerArray(width * depth);
+        this.events = new AtomicLong();
+        this.decayInterval = decayInterval;
+        this.lock = new ReentrantLock();
+        this.hotIds = new int[capacity];
+        this.hotCounts = new int[capacity];
+        this.slotsById = new IntObjectHashMap<>(capacity);
+    }
+
+    public void record(int id) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(row, id)));
+        }
+
+        boolean decayNeeded = events.incrementAndGet() % decayInterval == 0;
+        if (decayNeeded) {
+            lock.lock();
+        } else if (!lock.tryLock()) {
+            //Частая задача снова попадет в таблицу при следующих обращениях
+            return;
+        }
+        try {
+            updateHotIds(id, estimate);
+            if (decayNeeded) {
+                decay();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int estimate(int id) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, id)));
+        }
+        return estimate;
+    }
+
+    //id самых частых задач в порядке убывания оценки
+    public List<Integer> getHotIds(int k) {
+        Integer[] slots;
+        lock.lock();
+        try {
+            slots = new Integer[hotSize];
+            for (int slot = 0; slot < hotSize; slot++) {
+                slots[slot] = slot;
+            }
+            Arrays.sort(slots, Comparator.comparingInt((Integer slot) -> hotCounts[slot]).reversed());
+            List<Integer> ids = new ArrayList<>(Math.min(k, hotSize));
+            for (int i = 0; i < slots.length && ids.size() < k; i++) {
+                ids.add(hotIds[slots[i]]);
+            }
+            return ids;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void decay() {
+        lock.lock();
+        try {
+            for (int i = 0; i < counters.length(); i++) {
+                counters.set(i, counters.get(i) >>> 1);
+            }
+            for (int slot = 0; slot < hotSize; slot++) {
+                hotCounts[slot] >>>= 1;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void updateHotIds(int id, int estimate) {
+        Integer slot = slotsById.get(id);
+        if (slot != null) {
+            hotCounts[slot] = estimate;
+            if (slot == minSlot) {
+                updateMinSlot();
+            }
+            return;
+        }
+
+        if (hotSize < hotIds.length) {
+            hotIds[hotSize] = id;
+            hotCounts[hotSize] = estimate;
+            slotsById.put(id, Integer.valueOf(hotSize));
+            hotSize++;
+            updateMinSlot();
+        } else if (estimate > hotCounts[minSlot]) {
+            //Вытесняем самую редкую задачу из таблицы
+            slotsById.remove(hotIds[minSlot]);
+            hotIds[minSlot] = id;
+            hotCounts[minSlot] = estimate;
+            slotsById.put(id, Integer.valueOf(minSlot));
+            updateMinSlot();
+        }
+    }
+
+    //Размер таблицы постоянный, поэтому поиск минимума не зависит от числа задач
+    private void updateMinSlot() {
+        minSlot = 0;
+        for (int slot = 1; slot < hotSize; slot++) {
+            if (hotCounts[slot] < hotCounts[minSlot]) {
+                minSlot = slot;
+            }
+        }
+    }
+
+    private int index(int row, int id) {
+        int hash = (id + row) * SEEDS[row];
+        hash ^= hash >>> 16;
+        return row * width + (hash & (width - 1));
+    }
+}
@@ -0,0 +1,263 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+//Бинарный снимок задач.
+//Заголовок: magic (int), версия (short), количество записей (int).
+//Запись: тип (byte), id (int), статус (byte), id эпика (int), начало в минутах от эпохи (long),
+//длительность в минутах (long), затем название и описание в UTF-8 с длиной (int) впереди.
+//Отсутствующие время начала и длительность записываются как NULL_VALUE,
+//отсутствующие название и описание - длиной NULL_LENGTH
+public class BinaryTaskSnapshot {
+
+    public static final int MAGIC = 0x4B414E42;
+    public static final short VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Integer.BYTES;
+    private static final int FIXED_RECORD_SIZE = Byte.BYTES + Integer.BYTES + Byte.BYTES + Integer.BYTES
+            + Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long NULL_VALUE = Long.MIN_VALUE;
+    private static final int NULL_LENGTH = -1;
+    private static final byte[] NULL_BYTES = new byte[0];
+    private static final TasksTypes[] TYPES = TasksTypes.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private int records;
+
+    private BinaryTaskSnapshot(FileChannel channel) {
+        this.channel = channel;
+        //Буфер в куче: канал сам переиспользует свой временный прямой буфер, поэтому сохранение
+        //не выделяет новую прямую память
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    //Записи передаются в том же порядке, что и в CSV: эпик перед своими подзадачами.
+    //Снимок пишется во временный файл и подменяет прежний атомарно, поэтому сбой во время записи
+    //оставляет предыдущий снимок целым
+    public static void write(Path file, Iterable<? extends Task> tasks) {
+        Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            BinaryTaskSnapshot snapshot = new BinaryTaskSnapshot(channel);
+            //Количество записей дописывается в заголовок после записи всех задач
+            snapshot.buffer.putInt(MAGIC).putShort(VERSION).putInt(0);
+            for (Task task : tasks) {
+                snapshot.writeRecord(task);
+            }
+            snapshot.flushBuffer();
+            ByteBuffer count = ByteBuffer.allocate(Integer.BYTES).putInt(snapshot.records).flip();
+            channel.write(count, Integer.BYTES + Short.BYTES);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сохранения данных");
+        }
+        try {
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сохранения данных");
+        }
+    }
+
+    public static boolean isBinarySnapshot(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            return channel.read(magic) == Integer.BYTES && magic.flip().getInt() == MAGIC;
+        } catch (IOException e) {
+            throw new ManagerReadException("Ошибка чтения данных");
+        }
+    }
+
+    public static void read(Path file, Consumer<Task> consumer) {
+        try {
+            ByteBuffer buffer = map(file);
+            int records = buffer.getInt(HEADER_SIZE - Integer.BYTES);
+            for (int i = 0; i < records; i++) {
+                consumer.accept(readRecord(buffer));
+            }
+        } catch (RuntimeException e) {
+            throw readException(e);
+        }
+    }
+
+    //Делит снимок на сегменты примерно по segmentRecords записей, не отрывая подзадачи от эпика.
+    //Сегменты можно разбирать независимо через readRecords
+    public static List<ByteBuffer> split(Path file, int segmentRecords) {
+        try {
+            ByteBuffer buffer = map(file);
+            int records = buffer.getInt(HEADER_SIZE - Integer.BYTES);
+            List<ByteBuffer> segments = new ArrayList<>();
+            int segmentStart = buffer.position();
+            int segmentSize = 0;
+            for (int i = 0; i < records; i++) {
+                int recordStart = buffer.position();
+                if (segmentSize >= segmentRecords && TYPES[buffer.get(recordStart)] != TasksTypes.SUBTASK) {
+                    segments.add(buffer.slice(segmentStart, recordStart - segmentStart));
+                    segmentStart = recordStart;
+                    segmentSize = 0;
+                }
+                skipRecord(buffer);
+                segmentSize++;
+            }
+            if (segmentSize > 0) {
+                segments.add(buffer.slice(segmentStart, buffer.position() - segmentStart));
+            }
+            return segments;
+        } catch (RuntimeException e) {
+            throw readException(e);
+        }
+    }
+
+    public static void readRecords(ByteBuffer segment, Consumer<Task> consumer) {
+        try {
+            while (segment.hasRemaining()) {
+                consumer.accept(readRecord(segment));
+            }
+        } catch (RuntimeException e) {
+            throw readException(e);
+        }
+    }
+
+    //Возвращает буфер, позиционированный на первой записи
+    private static ByteBuffer map(Path file) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Files.size(file));
+        } catch (IOException e) {
+            throw new ManagerReadException("Ошибка чтения данных");
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new ManagerReadException("Файл не является бинарным снимком задач");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new ManagerReadException("Неподдерживаемая версия бинарного снимка: " + version);
+        }
+        buffer.getInt();
+        return buffer;
+    }
+
+    private static ManagerReadException readException(RuntimeException e) {
+        if (e instanceof ManagerReadException readException) {
+            return readException;
+        }
+        return new ManagerReadException("Ошибка чтения данных");
+    }
+
+    private void writeRecord(Task task) throws IOException {
+        byte[] name = toBytes(task.getTaskName());
+        byte[] description = toBytes(task.getTaskDescription());
+        int recordSize = FIXED_RECORD_SIZE + name.length + description.length;
+        if (buffer.remaining() < recordSize) {
+            flushBuffer();
+        }
+        //Запись больше буфера пишется через временный буфер
+        ByteBuffer target = buffer.remaining() < recordSize ? ByteBuffer.allocate(recordSize) : buffer;
+
+        TasksTypes type;
+        int epicId = 0;
+        switch (task) {
+            case Epic epic -> type = TasksTypes.EPIC;
+            case Subtask subtask -> {
+                type = TasksTypes.SUBTASK;
+                epicId = subtask.getEpicId();
+            }
+            default -> type = TasksTypes.TASK;
+        }
+        target.put((byte) type.ordinal())
+                .putInt(task.getId())
+                .put((byte) task.getTaskStatus().ordinal())
+                .putInt(epicId)
+                .putLong(task.getStartTime() != null
+                        ? Math.floorDiv(task.getStartTime().toEpochSecond(ZoneOffset.UTC), 60)
+                        : NULL_VALUE)
+                .putLong(task.getDuration() != null ? task.getDuration().toMinutes() : NULL_VALUE)
+                .putInt(lengthOf(task.getTaskName(), name))
+                .put(name)
+                .putInt(lengthOf(task.getTaskDescription(), description))
+                .put(description);
+
+        if (target != buffer) {
+            target.flip();
+            while (target.hasRemaining()) {
+                channel.write(target);
+            }
+        }
+        records++;
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static Task readRecord(ByteBuffer buffer) {
+        TasksTypes type = TYPES[buffer.get()];
+        int id = buffer.getInt();
+        Status status = STATUSES[buffer.get()];
+        int epicId = buffer.getInt();
+        long startTime = buffer.getLong();
+        long duration = buffer.getLong();
+        String name = readString(buffer);
+        String description = readString(buffer);
+
+        Task task = switch (type) {
+            case EPIC -> new Epic(name, description);
+            case SUBTASK -> new Subtask(name, description, epicId);
+            case TASK -> new Task(name, description);
+        };
+        task.setId(id);
+        //Статус, даты и длительность эпика рассчитываются по подзадачам
+        if (type != TasksTypes.EPIC) {
+            task.setTaskStatus(status);
+            if (startTime != NULL_VALUE) {
+                task.setStartTime(LocalDateTime.ofEpochSecond(startTime * 60, 0, ZoneOffset.UTC));
+            }
+            if (duration != NULL_VALUE) {
+                task.setDuration(Duration.ofMinutes(duration));
+            }
+        }
+        return task;
+    }
+
+    private static void skipRecord(ByteBuffer buffer) {
+        buffer.position(buffer.position() + FIXED_RECORD_SIZE - 2 * Integer.BYTES);
+        int nameLength = buffer.getInt();
+        buffer.position(buffer.position() + Math.max(nameLength, 0));
+        int descriptionLength = buffer.getInt();
+        buffer.position(buffer.position() + Math.max(descriptionLength, 0));
+    }
+
+    private static byte[] toBytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : NULL_BYTES;
+    }
+
+    private static int lengthOf(String value, byte[] bytes) {
+        return value != null ? bytes.length : NULL_LENGTH;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
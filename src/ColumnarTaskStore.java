@@ -0,0 +1,338 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//Колоночное хранилище задач: по строке на задачу в параллельных массивах примитивов
+//(id, тип, статус, эпик, начало в секундах эпохи, длительность в минутах).
+//Названия и описания лежат подряд в общей куче символов, строка хранит смещение и длину.
+//Агрегаты считаются простыми циклами по массивам без обращения к объектам задач.
+//Удаленная строка замещается последней, поэтому строки всегда лежат плотно
+public class ColumnarTaskStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NO_ROW = -1;
+    private static final int NULL_STRING = -1;
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final TasksTypes[] TYPES = TasksTypes.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[] ids;
+    private byte[] types;
+    private byte[] statuses;
+    private int[] epicIds;
+    private long[] starts;
+    private long[] durations;
+    private int[] nameOffsets;
+    private int[] nameLengths;
+    private int[] descriptionOffsets;
+    private int[] descriptionLengths;
+    private int rows;
+
+    //id последовательные, поэтому строка находится по прямому индексу id
+    private int[] rowsById;
+
+    private char[] heap;
+    private int heapSize;
+    private int heapGarbage;
+
+    public ColumnarTaskStore() {
+        ids = new int[INITIAL_CAPACITY];
+        types = new byte[INITIAL_CAPACITY];
+        statuses = new byte[INITIAL_CAPACITY];
+        epicIds = new int[INITIAL_CAPACITY];
+        starts = new long[INITIAL_CAPACITY];
+        durations = new long[INITIAL_CAPACITY];
+        nameOffsets = new int[INITIAL_CAPACITY];
+        nameLengths = new int[INITIAL_CAPACITY];
+        descriptionOffsets = new int[INITIAL_CAPACITY];
+        descriptionLengths = new int[INITIAL_CAPACITY];
+        rowsById = new int[INITIAL_CAPACITY];
+        Arrays.fill(rowsById, NO_ROW);
+        heap = new char[INITIAL_CAPACITY * 16];
+    }
+
+    //Добавляет строку задачи или перезаписывает существующую
+    public void put(TasksTypes type, Task task) {
+        lock.writeLock().lock();
+        try {
+            int id = task.getId();
+            if (id < 0) {
+                throw new IllegalArgumentException("Некорректный id задачи: " + id);
+            }
+            int row = rowOf(id);
+            if (row == NO_ROW) {
+                row = appendRow(id);
+            } else {
+                heapGarbage += Math.max(nameLengths[row], 0) + Math.max(descriptionLengths[row], 0);
+            }
+            types[row] = (byte) type.ordinal();
+            statuses[row] = (byte) task.getTaskStatus().ordinal();
+            epicIds[row] = task instanceof Subtask subtask ? subtask.getEpicId() : 0;
+            starts[row] = task.getStartSeconds();
+            durations[row] = task.getDurationMinutes();
+            nameOffsets[row] = heapSize;
+            nameLengths[row] = appendString(task.getTaskName());
+            descriptionOffsets[row] = heapSize;
+            descriptionLengths[row] = appendString(task.getTaskDescription());
+            compactHeapIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(id);
+            if (row != NO_ROW) {
+                removeRow(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear(TasksTypes type) {
+        lock.writeLock().lock();
+        try {
+            //Строки удаляются с конца, чтобы на место удаленной не вставала еще не проверенная
+            for (int row = rows - 1; row >= 0; row--) {
+                if (types[row] == type.ordinal()) {
+                    removeRow(row);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(int id) {
+        lock.readLock().lock();
+        try {
+            return rowOf(id) != NO_ROW;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Объектное представление строки: новая задача, не связанная с менеджером
+    public Task getTask(int id) {
+        lock.readLock().lock();
+        try {
+            int row = rowOf(id);
+            if (row == NO_ROW) {
+                return null;
+            }
+            String name = readString(nameOffsets[row], nameLengths[row]);
+            String description = readString(descriptionOffsets[row], descriptionLengths[row]);
+            Task task = switch (TYPES[types[row]]) {
+                case EPIC -> new Epic(name, description);
+                case SUBTASK -> new Subtask(name, description, epicIds[row]);
+                case TASK -> new Task(name, description);
+            };
+            //Статус и время эпика пишутся напрямую: его сеттеры запрещают ручное изменение
+            task.setId(id);
+            task.taskStatus = STATUSES[statuses[row]];
+            task.storeStartSeconds(starts[row]);
+            task.storeDurationMinutes(durations[row]);
+            return task;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Суммарная длительность задач типа в минутах
+    public long sumDurationMinutes(TasksTypes type) {
+        lock.readLock().lock();
+        try {
+            byte typeCode = (byte) type.ordinal();
+            long sum = 0;
+            for (int row = 0; row < rows; row++) {
+                long duration = durations[row];
+                sum += types[row] == typeCode && duration != Task.NO_TIME ? duration : 0;
+            }
+            return sum;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Количество задач типа по статусам, индекс массива - порядковый номер статуса
+    public int[] countByStatus(TasksTypes type) {
+        lock.readLock().lock();
+        try {
+            byte typeCode = (byte) type.ordinal();
+            int[] counts = new int[STATUSES.length];
+            for (int row = 0; row < rows; row++) {
+                counts[statuses[row]] += types[row] == typeCode ? 1 : 0;
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Количество задач типа по неделям начала: ключ - понедельник недели
+    public Map<LocalDate, Integer> countByWeek(TasksTypes type) {
+        lock.readLock().lock();
+        try {
+            byte typeCode = (byte) type.ordinal();
+            long minWeek = Long.MAX_VALUE;
+            long maxWeek = Long.MIN_VALUE;
+            for (int row = 0; row < rows; row++) {
+                if (types[row] == typeCode && starts[row] != Task.NO_TIME) {
+                    long week = weekOf(starts[row]);
+                    minWeek = Math.min(minWeek, week);
+                    maxWeek = Math.max(maxWeek, week);
+                }
+            }
+
+            Map<LocalDate, Integer> buckets = new TreeMap<>();
+            if (minWeek > maxWeek) {
+                return buckets;
+            }
+            //Недели считаются в плотном массиве, если диапазон разумный, иначе сразу в карте
+            if (maxWeek - minWeek < rows + 1024L) {
+                int[] counts = new int[(int) (maxWeek - minWeek + 1)];
+                for (int row = 0; row < rows; row++) {
+                    if (types[row] == typeCode && starts[row] != Task.NO_TIME) {
+                        counts[(int) (weekOf(starts[row]) - minWeek)]++;
+                    }
+                }
+                for (int week = 0; week < counts.length; week++) {
+                    if (counts[week] > 0) {
+                        buckets.put(mondayOf(minWeek + week), counts[week]);
+                    }
+                }
+            } else {
+                for (int row = 0; row < rows; row++) {
+                    if (types[row] == typeCode && starts[row] != Task.NO_TIME) {
+                        buckets.merge(mondayOf(weekOf(starts[row])), 1, Integer::sum);
+                    }
+                }
+            }
+            return buckets;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int rowOf(int id) {
+        return id >= 0 && id < rowsById.length ? rowsById[id] : NO_ROW;
+    }
+
+    private int appendRow(int id) {
+        if (rows == ids.length) {
+            growRows(rows << 1);
+        }
+        if (id >= rowsById.length) {
+            int oldLength = rowsById.length;
+            rowsById = Arrays.copyOf(rowsById, Math.max(id + 1, oldLength << 1));
+            Arrays.fill(rowsById, oldLength, rowsById.length, NO_ROW);
+        }
+        int row = rows++;
+        ids[row] = id;
+        rowsById[id] = row;
+        return row;
+    }
+
+    private void removeRow(int row) {
+        heapGarbage += Math.max(nameLengths[row], 0) + Math.max(descriptionLengths[row], 0);
+        rowsById[ids[row]] = NO_ROW;
+        int last = --rows;
+        if (row != last) {
+            ids[row] = ids[last];
+            types[row] = types[last];
+            statuses[row] = statuses[last];
+            epicIds[row] = epicIds[last];
+            starts[row] = starts[last];
+            durations[row] = durations[last];
+            nameOffsets[row] = nameOffsets[last];
+            nameLengths[row] = nameLengths[last];
+            descriptionOffsets[row] = descriptionOffsets[last];
+            descriptionLengths[row] = descriptionLengths[last];
+            rowsById[ids[row]] = row;
+        }
+        compactHeapIfNeeded();
+    }
+
+    private void growRows(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        types = Arrays.copyOf(types, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        epicIds = Arrays.copyOf(epicIds, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+        nameLengths = Arrays.copyOf(nameLengths, capacity);
+        descriptionOffsets = Arrays.copyOf(descriptionOffsets, capacity);
+        descriptionLengths = Arrays.copyOf(descriptionLengths, capacity);
+    }
+
+    private int appendString(String value) {
+        if (value == null) {
+            return NULL_STRING;
+        }
+        ensureHeapCapacity(heapSize + value.length());
+        value.getChars(0, value.length(), heap, heapSize);
+        heapSize += value.length();
+        return value.length();
+    }
+
+    private String readString(int offset, int length) {
+        return length == NULL_STRING ? null : new String(heap, offset, length);
+    }
+
+    private void ensureHeapCapacity(int capacity) {
+        if (capacity > heap.length) {
+            heap = Arrays.copyOf(heap, Math.max(capacity, heap.length << 1));
+        }
+    }
+
+    //Куча переписывается без строк удаленных и перезаписанных задач, когда их больше половины
+    private void compactHeapIfNeeded() {
+        if (heapGarbage <= heapSize / 2 || heapSize < INITIAL_CAPACITY * 16) {
+            return;
+        }
+        char[] compacted = new char[Math.max(INITIAL_CAPACITY * 16, (heapSize - heapGarbage) * 2)];
+        int size = 0;
+        for (int row = 0; row < rows; row++) {
+            size = moveString(compacted, size, nameOffsets, nameLengths, row);
+            size = moveString(compacted, size, descriptionOffsets, descriptionLengths, row);
+        }
+        heap = compacted;
+        heapSize = size;
+        heapGarbage = 0;
+    }
+
+    private int moveString(char[] target, int size, int[] offsets, int[] lengths, int row) {
+        int length = lengths[row];
+        if (length > 0) {
+            System.arraycopy(heap, offsets[row], target, size, length);
+        }
+        offsets[row] = size;
+        return size + Math.max(length, 0);
+    }
+
+    //Номер недели, начинающейся с понедельника: 1970-01-01 - четверг, поэтому день сдвигается на 3
+    private static long weekOf(long epochSeconds) {
+        return Math.floorDiv(Math.floorDiv(epochSeconds, SECONDS_PER_DAY) + 3, 7);
+    }
+
+    private static LocalDate mondayOf(long week) {
+        return LocalDate.ofEpochDay(week * 7 - 3);
+    }
+}
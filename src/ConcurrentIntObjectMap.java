@@ -0,0 +1,28 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+//Потокобезопасный вариант для многопоточного менеджера: ключи упаковываются,
+//зато чтение не требует блокировок
+public class ConcurrentIntObjectMap<V> extends ConcurrentHashMap<Integer, V> implements IntObjectMap<V> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public V get(int key) {
+        return super.get((Object) key);
+    }
+
+    @Override
+    public V put(int key, V value) {
+        return super.put((Integer) key, value);
+    }
+
+    @Override
+    public V remove(int key) {
+        return super.remove((Object) key);
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        return super.containsKey((Object) key);
+    }
+}
@@ -0,0 +1,478 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//Потокобезопасный менеджер задач.
+//Эпики и их подзадачи защищаются блокировками, разбитыми на полосы по id эпика,
+//поэтому изменения разных эпиков не конкурируют между собой. Временная шкала
+//(сортированный список и дерево интервалов) общая и защищается отдельной блокировкой,
+//которая берется для всех изменений задач и для подзадач со временем начала. Порядок захвата: эпик -> шкала
+public class ConcurrentTaskManager extends InMemoryTaskManager {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ReadWriteLock[] epicLocks;
+    private final Lock timelineLock;
+    private final AtomicInteger nextId;
+
+    public ConcurrentTaskManager() {
+        super(new ConcurrentIntObjectMap<>(), new ConcurrentIntObjectMap<>(), new ConcurrentIntObjectMap<>(),
+                new RingBufferHistoryManager(Managers.getDefaultHistory()), new TaskStatusIndex(true));
+        epicLocks = new ReadWriteLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            epicLocks[i] = new ReentrantReadWriteLock();
+        }
+        timelineLock = new ReentrantLock();
+        nextId = new AtomicInteger(1);
+    }
+
+    //Задача без времени тоже создается под блокировкой шкалы: под ней же clearTasks обходит и очищает задачи
+    @Override
+    public void createTask(Task task) {
+        if (task == null) {
+            return;
+        }
+
+        timelineLock.lock();
+        try {
+            super.createTask(task);
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    //Эпик публикуется под блокировкой своей полосы, чтобы подзадачи не добавлялись в него до подписки
+    @Override
+    public void createEpic(Epic epic) {
+        if (epic == null) {
+            return;
+        }
+
+        epic.setId(getAndIncrementId());
+        Lock epicLock = epicLock(epic.getId()).writeLock();
+        epicLock.lock();
+        try {
+            putEpic(epic);
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    @Override
+    public void createSubtask(Subtask subtask) {
+        if (subtask == null) {
+            return;
+        }
+
+        Lock epicLock = epicLock(subtask.getEpicId()).writeLock();
+        epicLock.lock();
+        try {
+            if (subtask.getStartSeconds() == Task.NO_TIME) {
+                super.createSubtask(subtask);
+                return;
+            }
+
+            timelineLock.lock();
+            try {
+                super.createSubtask(subtask);
+            } finally {
+                timelineLock.unlock();
+            }
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    //Таблицу подзадач эпика меняют писатели под блокировкой полосы, поэтому наружу отдается
+    //снимок, снятый под ней же. Снимок разделяет с эпиком неизменяемые состояния подзадач
+    @Override
+    public Epic getEpicById(int id) {
+        Lock epicLock = epicLock(id).readLock();
+        epicLock.lock();
+        try {
+            Epic epic = super.getEpicById(id);
+            return epic != null ? new Epic(epic) : null;
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        Lock epicLock = epicLock(epicId).readLock();
+        epicLock.lock();
+        try {
+            return super.getSubtasksOfEpic(epicId);
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    //Подзадачи эпика лежат в непотокобезопасной таблице, поэтому здесь возвращается снимок
+    @Override
+    public Collection<Subtask> getSubtasksOfEpicView(int epicId) {
+        return getSubtasksOfEpic(epicId);
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        timelineLock.lock();
+        try {
+            super.updateTask(task);
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        Lock epicLock = epicLock(epic.getId()).writeLock();
+        epicLock.lock();
+        try {
+            timelineLock.lock();
+            try {
+                super.updateEpic(epic);
+            } finally {
+                timelineLock.unlock();
+            }
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        Lock epicLock = epicLock(subtask.getEpicId()).writeLock();
+        epicLock.lock();
+        try {
+            timelineLock.lock();
+            try {
+                super.updateSubtask(subtask);
+            } finally {
+                timelineLock.unlock();
+            }
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    //Пакет проверяется и применяется под блокировками всех эпиков и шкалы, поэтому виден целиком или никак
+    @Override
+    public void createAll(List<? extends Task> tasks) {
+        lockAllEpics();
+        try {
+            timelineLock.lock();
+            try {
+                super.createAll(tasks);
+            } finally {
+                timelineLock.unlock();
+            }
+        } finally {
+            unlockAllEpics();
+        }
+    }
+
+    @Override
+    public void updateAll(List<? extends Task> tasks) {
+        lockAllEpics();
+        try {
+            timelineLock.lock();
+            try {
+                super.updateAll(tasks);
+            } finally {
+                timelineLock.unlock();
+            }
+        } finally {
+            unlockAllEpics();
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<Integer> ids) {
+        lockAllEpics();
+        try {
+            timelineLock.lock();
+            try {
+                super.deleteAll(ids);
+            } finally {
+                timelineLock.unlock();
+            }
+        } finally {
+            unlockAllEpics();
+        }
+    }
+
+    @Override
+    public void deleteTaskById(int id) {
+        timelineLock.lock();
+        try {
+            super.deleteTaskById(id);
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        Lock epicLock = epicLock(id).writeLock();
+        epicLock.lock();
+        try {
+            timelineLock.lock();
+            try {
+                super.deleteEpicById(id);
+            } finally {
+                timelineLock.unlock();
+            }
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteSubtaskById(int id) {
+        Subtask subtask = subtasksMap.get(id);
+        if (subtask == null) {
+            return;
+        }
+
+        Lock epicLock = epicLock(subtask.getEpicId()).writeLock();
+        epicLock.lock();
+        try {
+            timelineLock.lock();
+            try {
+                super.deleteSubtaskById(id);
+            } finally {
+                timelineLock.unlock();
+            }
+        } finally {
+            epicLock.unlock();
+        }
+    }
+
+    @Override
+    public void clearTasks() {
+        timelineLock.lock();
+        try {
+            super.clearTasks();
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    @Override
+    public void clearEpics() {
+        lockAllEpics();
+        try {
+            timelineLock.lock();
+            try {
+                super.clearEpics();
+            } finally {
+                timelineLock.unlock();
+            }
+        } finally {
+            unlockAllEpics();
+        }
+    }
+
+    @Override
+    public void clearSubtasks() {
+        lockAllEpics();
+        try {
+            timelineLock.lock();
+            try {
+                super.clearSubtasks();
+            } finally {
+                timelineLock.unlock();
+            }
+        } finally {
+            unlockAllEpics();
+        }
+    }
+
+    //Сортированный список защищен блокировкой шкалы, поэтому живое представление невозможно - возвращается снимок
+    @Override
+    public Set<Task> getPrioritizedTasks() {
+        timelineLock.lock();
+        try {
+            return Collections.unmodifiableSet(new LinkedHashSet<>(sortedTasks));
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getTasksBetween(LocalDateTime from, LocalDateTime to) {
+        timelineLock.lock();
+        try {
+            return super.getTasksBetween(from, to);
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getTasksStartingAfter(LocalDateTime time, int limit) {
+        timelineLock.lock();
+        try {
+            return super.getTasksStartingAfter(time, limit);
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    @Override
+    public TimelinePage getTimelinePage(LocalDateTime cursor, int limit) {
+        timelineLock.lock();
+        try {
+            return super.getTimelinePage(cursor, limit);
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    @Override
+    public LocalDateTime findFreeSlot(LocalDateTime earliestStart, Duration duration) {
+        timelineLock.lock();
+        try {
+            return super.findFreeSlot(earliestStart, duration);
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    //Поиск окна и создание задачи выполняются под одной блокировкой шкалы,
+    //для подзадачи предварительно берется блокировка эпика
+    @Override
+    public void scheduleTask(Task task, LocalDateTime earliestStart) {
+        Lock epicLock = task instanceof Subtask subtask ? epicLock(subtask.getEpicId()).writeLock() : null;
+        if (epicLock != null) {
+            epicLock.lock();
+        }
+        try {
+            timelineLock.lock();
+            try {
+                super.scheduleTask(task, earliestStart);
+            } finally {
+                timelineLock.unlock();
+            }
+        } finally {
+            if (epicLock != null) {
+                epicLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void scheduleTasks(List<? extends Task> tasks, LocalDateTime earliestStart) {
+        lockAllEpics();
+        try {
+            timelineLock.lock();
+            try {
+                super.scheduleTasks(tasks, earliestStart);
+            } finally {
+                timelineLock.unlock();
+            }
+        } finally {
+            unlockAllEpics();
+        }
+    }
+
+    @Override
+    public void enableTimeGrid(LocalDateTime origin, Duration slotSize, Duration horizon) {
+        timelineLock.lock();
+        try {
+            super.enableTimeGrid(origin, slotSize, horizon);
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    @Override
+    public void disableTimeGrid() {
+        timelineLock.lock();
+        try {
+            super.disableTimeGrid();
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    @Override
+    public ColumnarTaskStore enableColumnarStore() {
+        lockAllEpics();
+        try {
+            timelineLock.lock();
+            try {
+                return super.enableColumnarStore();
+            } finally {
+                timelineLock.unlock();
+            }
+        } finally {
+            unlockAllEpics();
+        }
+    }
+
+    @Override
+    public boolean isTasksOverlapped(Task task) {
+        if (task.getEndSeconds() == Task.NO_TIME) {
+            return false;
+        }
+
+        timelineLock.lock();
+        try {
+            return super.isTasksOverlapped(task);
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getOverlappingTasks(Task task) {
+        timelineLock.lock();
+        try {
+            return super.getOverlappingTasks(task);
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    @Override
+    protected void setTaskId(int taskId) {
+        nextId.set(taskId);
+    }
+
+    @Override
+    protected int getAndIncrementId() {
+        return nextId.getAndIncrement();
+    }
+
+    @Override
+    protected int reserveIds(int count) {
+        return nextId.getAndAdd(count);
+    }
+
+    private ReadWriteLock epicLock(int epicId) {
+        return epicLocks[(epicId ^ (epicId >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    private void lockAllEpics() {
+        for (ReadWriteLock epicLock : epicLocks) {
+            epicLock.writeLock().lock();
+        }
+    }
+
+    private void unlockAllEpics() {
+        for (int i = LOCK_STRIPES - 1; i >= 0; i--) {
+            epicLocks[i].writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,338 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+//Кодирование задач в строки CSV и обратно без String.format, split и DateTimeFormatter.
+//Числа и даты пишутся прямо в буфер, поля разбираются по границам без промежуточных подстрок.
+//Поля с запятыми, кавычками и переводами строк заключаются в кавычки, кавычки внутри удваиваются.
+//Экземпляр хранит переиспользуемые буферы и не потокобезопасен
+public class CsvTaskCodec {
+
+    public static final String NULL_VALUE = "null";
+    private static final int COLUMN_ID = 0;
+    private static final int COLUMN_TYPE = 1;
+    private static final int COLUMN_NAME = 2;
+    private static final int COLUMN_STATUS = 3;
+    private static final int COLUMN_DESCRIPTION = 4;
+    private static final int COLUMN_START_TIME = 5;
+    private static final int COLUMN_DURATION = 6;
+    private static final int COLUMN_EPIC = 7;
+    private static final int COLUMNS = 8;
+    private static final TasksTypes[] TYPES = TasksTypes.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private final int[] fieldStarts = new int[COLUMNS];
+    private final int[] fieldEnds = new int[COLUMNS];
+    private final StringBuilder unescaped = new StringBuilder();
+
+    public static TasksTypes typeOf(Task task) {
+        return switch (task) {
+            case Epic epic -> TasksTypes.EPIC;
+            case Subtask subtask -> TasksTypes.SUBTASK;
+            default -> TasksTypes.TASK;
+        };
+    }
+
+    public void encode(Task task, StringBuilder out) {
+        TasksTypes type = typeOf(task);
+
+        out.append(task.getId()).append(',')
+                .append(type.name()).append(',');
+        appendEscaped(out, task.getTaskName());
+        out.append(',').append(task.getTaskStatus().name()).append(',');
+        appendEscaped(out, task.getTaskDescription());
+        out.append(',');
+        appendDateTime(out, task.getStartTime());
+        out.append(',');
+        if (task.getDuration() != null) {
+            out.append(task.getDuration().toMinutes());
+        } else {
+            out.append(NULL_VALUE);
+        }
+        if (task instanceof Subtask subtask) {
+            out.append(',').append(subtask.getEpicId());
+        }
+        out.append(System.lineSeparator());
+    }
+
+    public Task decode(CharSequence record) {
+        return decode(record, 0);
+    }
+
+    //Разбирает строку, начиная с позиции from (например, после префикса записи журнала)
+    public Task decode(CharSequence record, int from) {
+        int columns = splitFields(record, from);
+        if (columns < COLUMN_DURATION + 1) {
+            throw new ManagerReadException("Некорректная строка CSV: " + record);
+        }
+
+        int id = parseInt(record, COLUMN_ID);
+        TasksTypes type = parseEnum(record, COLUMN_TYPE, TYPES);
+        String name = parseString(record, COLUMN_NAME);
+        String description = parseString(record, COLUMN_DESCRIPTION);
+
+        Task task;
+        switch (type) {
+            case EPIC -> {
+                Epic epic = new Epic(name, description);
+                epic.setId(id);
+                //Статус, даты и длительность эпика рассчитываются по подзадачам
+                return epic;
+            }
+            case SUBTASK -> {
+                if (columns <= COLUMN_EPIC) {
+                    throw new ManagerReadException("Некорректная строка CSV: " + record);
+                }
+                task = new Subtask(name, description, parseInt(record, COLUMN_EPIC));
+            }
+            default -> task = new Task(name, description);
+        }
+        task.setId(id);
+        task.setTaskStatus(parseEnum(record, COLUMN_STATUS, STATUSES));
+        if (!isNull(record, COLUMN_START_TIME)) {
+            task.setStartTime(parseDateTime(record, COLUMN_START_TIME));
+        }
+        if (!isNull(record, COLUMN_DURATION)) {
+            task.setDuration(Duration.ofMinutes(parseLong(record, COLUMN_DURATION)));
+        }
+        return task;
+    }
+
+    public static boolean isSubtaskRecord(CharSequence record) {
+        int typeStart = indexOf(record, ',', 0) + 1;
+        return typeStart > 0 && regionEquals(record, typeStart, TasksTypes.SUBTASK.name())
+                && record.length() > typeStart + TasksTypes.SUBTASK.name().length()
+                && record.charAt(typeStart + TasksTypes.SUBTASK.name().length()) == ',';
+    }
+
+    //null пишется пустым полем, а пустая строка - парой кавычек, чтобы их можно было различить
+    private static void appendEscaped(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean needsQuotes = value.isEmpty();
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            out.append(value);
+            return;
+        }
+
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    //Формат dd.MM.yyyy HH:mm
+    private static void appendDateTime(StringBuilder out, LocalDateTime dateTime) {
+        if (dateTime == null) {
+            out.append(NULL_VALUE);
+            return;
+        }
+        appendTwoDigits(out, dateTime.getDayOfMonth());
+        out.append('.');
+        appendTwoDigits(out, dateTime.getMonthValue());
+        out.append('.');
+        int year = dateTime.getYear();
+        if (year >= 0 && year < 1000) {
+            out.append(year < 10 ? "000" : year < 100 ? "00" : "0");
+        }
+        out.append(year).append(' ');
+        appendTwoDigits(out, dateTime.getHour());
+        out.append(':');
+        appendTwoDigits(out, dateTime.getMinute());
+    }
+
+    private static void appendTwoDigits(StringBuilder out, int value) {
+        out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    //Запоминает границы полей с учетом кавычек, возвращает количество полей
+    private int splitFields(CharSequence record, int from) {
+        int column = 0;
+        int position = from;
+        int length = record.length();
+        while (column < COLUMNS) {
+            fieldStarts[column] = position;
+            if (position < length && record.charAt(position) == '"') {
+                position++;
+                while (position < length) {
+                    if (record.charAt(position) == '"') {
+                        if (position + 1 < length && record.charAt(position + 1) == '"') {
+                            position += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    position++;
+                }
+                position++;
+            } else {
+                while (position < length && record.charAt(position) != ',') {
+                    position++;
+                }
+            }
+            fieldEnds[column] = Math.min(position, length);
+            column++;
+            if (position >= length) {
+                break;
+            }
+            position++;
+        }
+        return column;
+    }
+
+    private boolean isNull(CharSequence record, int column) {
+        return fieldEnds[column] - fieldStarts[column] == NULL_VALUE.length()
+                && regionEquals(record, fieldStarts[column], NULL_VALUE);
+    }
+
+    private int parseInt(CharSequence record, int column) {
+        long value = parseLong(record, column);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new ManagerReadException("Некорректное число в строке CSV: " + record);
+        }
+        return (int) value;
+    }
+
+    private long parseLong(CharSequence record, int column) {
+        return parseNumber(record, fieldStarts[column], fieldEnds[column]);
+    }
+
+    private static long parseNumber(CharSequence record, int start, int end) {
+        boolean negative = start < end && record.charAt(start) == '-';
+        int position = negative ? start + 1 : start;
+        if (position >= end) {
+            throw new ManagerReadException("Некорректное число в строке CSV: " + record);
+        }
+        long value = 0;
+        for (; position < end; position++) {
+            char c = record.charAt(position);
+            if (c < '0' || c > '9') {
+                throw new ManagerReadException("Некорректное число в строке CSV: " + record);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private <E extends Enum<E>> E parseEnum(CharSequence record, int column, E[] values) {
+        int start = fieldStarts[column];
+        int length = fieldEnds[column] - start;
+        for (E value : values) {
+            if (value.name().length() == length && regionEquals(record, start, value.name())) {
+                return value;
+            }
+        }
+        throw new ManagerReadException("Некорректное значение в строке CSV: " + record);
+    }
+
+    private String parseString(CharSequence record, int column) {
+        int start = fieldStarts[column];
+        int end = fieldEnds[column];
+        if (start >= end) {
+            return null;
+        }
+        if (record.charAt(start) != '"') {
+            return record.subSequence(start, end).toString();
+        }
+
+        unescaped.setLength(0);
+        for (int position = start + 1; position < end - 1; position++) {
+            char c = record.charAt(position);
+            unescaped.append(c);
+            if (c == '"') {
+                position++;
+            }
+        }
+        return unescaped.toString();
+    }
+
+    private LocalDateTime parseDateTime(CharSequence record, int column) {
+        int start = fieldStarts[column];
+        int end = fieldEnds[column];
+        int dayEnd = indexOf(record, '.', start);
+        int monthEnd = indexOf(record, '.', dayEnd + 1);
+        int yearEnd = indexOf(record, ' ', monthEnd + 1);
+        int hourEnd = indexOf(record, ':', yearEnd + 1);
+        if (dayEnd < 0 || monthEnd < 0 || yearEnd < 0 || hourEnd < 0 || hourEnd >= end) {
+            throw new ManagerReadException("Некорректная дата в строке CSV: " + record);
+        }
+        return LocalDateTime.of(
+                (int) parseNumber(record, monthEnd + 1, yearEnd),
+                (int) parseNumber(record, dayEnd + 1, monthEnd),
+                (int) parseNumber(record, start, dayEnd),
+                (int) parseNumber(record, yearEnd + 1, hourEnd),
+                (int) parseNumber(record, hourEnd + 1, end));
+    }
+
+    private static int indexOf(CharSequence record, char c, int from) {
+        for (int i = from; i < record.length(); i++) {
+            if (record.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionEquals(CharSequence record, int start, String value) {
+        if (start + value.length() > record.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (record.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Читает записи CSV из Reader: перевод строки внутри кавычек не завершает запись.
+    //Пустые строки пропускаются, возвращаемый буфер переиспользуется между вызовами
+    public static class RecordReader {
+
+        private final Reader reader;
+        private final char[] chunk = new char[8192];
+        private final StringBuilder record = new StringBuilder(256);
+        private int position;
+        private int limit;
+
+        public RecordReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        public CharSequence next() throws IOException {
+            record.setLength(0);
+            boolean quoted = false;
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(chunk, 0, chunk.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return record.isEmpty() ? null : record;
+                    }
+                }
+                char c = chunk[position++];
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (!quoted && (c == '\n' || c == '\r')) {
+                    if (!record.isEmpty()) {
+                        return record;
+                    }
+                    continue;
+                }
+                record.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+public enum Durability {
+    NONE,
+    WRITE,
+    FSYNC
+}
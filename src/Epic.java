@@ -4,66 +4,196 @@ import java.util.*;
 
 public class Epic extends Task {
 
-    private final Map<Integer, Subtask> subtasksMap;
+    //У снимков эпика из истории подзадачи восстанавливаются из subtaskStates по требованию
+    private IntObjectMap<Subtask> subtasksMap;
 
-    private LocalDateTime endTime;
+    private long endSeconds = NO_TIME;
+    private int endNanos;
+
+    //Накопленные значения для пересчета статуса, дат и длительности без обхода всех подзадач.
+    //Записи SubtaskState неизменяемы, поэтому снимок эпика разделяет их с оригиналом,
+    //а тот, кто изменяет эпик первым, копирует таблицу (копирование при записи)
+    private IntObjectMap<SubtaskState> subtaskStates;
+    //Снимки снимаются и под блокировкой чтения, поэтому флаг могут выставить несколько потоков сразу:
+    //они записывают одно и то же значение, а volatile делает его видимым писателю
+    private volatile boolean sharedStates;
+    //Ключи - моменты с точностью до наносекунд, значения - число подзадач с таким началом/окончанием
+    private final NavigableMap<TimePoint, Integer> startTimes;
+    private final NavigableMap<TimePoint, Integer> endTimes;
+    private int subtaskNew;
+    private int subtaskDone;
+    private long totalDurationMinutes;
+
+    private EpicListener epicListener;
 
     public Epic(String taskName, String taskDescription) {
         super(taskName, taskDescription);
-        subtasksMap = new HashMap<>();
+        subtasksMap = new IntObjectHashMap<>();
+        subtaskStates = new IntObjectHashMap<>();
+        startTimes = new TreeMap<>();
+        endTimes = new TreeMap<>();
     }
 
+    //Эпик без подзадач с уже рассчитанными статусом и датами: так его читает хранилище вне кучи,
+    //а подзадачи запрашиваются у менеджера отдельно
+    public Epic(String taskName, String taskDescription, Status taskStatus,
+                long startSeconds, long durationMinutes, long endSeconds) {
+        super(taskName, taskDescription, startSeconds, 0, durationMinutes);
+        this.taskStatus = taskStatus;
+        this.endSeconds = endSeconds;
+        subtasksMap = new IntObjectHashMap<>();
+        subtaskStates = new IntObjectHashMap<>();
+        startTimes = new TreeMap<>();
+        endTimes = new TreeMap<>();
+    }
+
+    //Снимок эпика за O(1): подзадачи не копируются, а разделяются с оригиналом
     public Epic(Epic epic) {
-        super(epic.getTaskName(), epic.getTaskDescription());
+        super(epic.getTaskName(), epic.getTaskDescription(), epic.getStartSeconds(), epic.getStartNanos(),
+                epic.getDurationMinutes());
         this.taskStatus = epic.getTaskStatus();
         this.id = epic.getId();
-        subtasksMap = new HashMap<>();
-        epic.subtasksMap.forEach((id, subtask) -> subtasksMap.put(id, new Subtask(subtask)));
-        this.duration = epic.getDuration() != null ? Duration.ofMinutes(epic.getDuration().toMinutes()) : null;
-        this.startTime = epic.getStartTime() != null ? LocalDateTime.from(epic.getStartTime()) : null;
-        this.endTime = epic.getStartTime() != null ? LocalDateTime.from(epic.getEndTime()) : null;
+        this.endSeconds = epic.getEndSeconds();
+        this.endNanos = epic.endNanos;
+        epic.sharedStates = true;
+        subtaskStates = epic.subtaskStates;
+        sharedStates = true;
+        startTimes = new TreeMap<>();
+        endTimes = new TreeMap<>();
+        subtaskNew = epic.subtaskNew;
+        subtaskDone = epic.subtaskDone;
+        totalDurationMinutes = epic.totalDurationMinutes;
     }
 
     public void addSubtask(int id, Subtask subtask) {
+        ensureExclusive();
         if (!subtasksMap.containsKey(id)) {
             subtasksMap.put(id, subtask);
+            if (epicListener != null) {
+                epicListener.onSubtaskAdded(subtask);
+            }
+        }
+        applySubtaskState(id, subtasksMap.get(id));
+    }
+
+    public void updateSubtask(Subtask subtask) {
+        if (subtaskStates.containsKey(subtask.getId())) {
+            ensureExclusive();
+            Subtask oldSubtask = subtasksMap.put(subtask.getId(), subtask);
+            if (epicListener != null) {
+                epicListener.onSubtaskUpdated(oldSubtask, subtask);
+            }
+            applySubtaskState(subtask.getId(), subtask);
+        }
+    }
+
+    //Пакетные операции пересчитывают статус, даты и длительность эпика один раз
+    public void addSubtasks(Collection<Subtask> subtasks) {
+        ensureExclusive();
+        for (Subtask subtask : subtasks) {
+            if (subtasksMap.putIfAbsent(subtask.getId(), subtask) == null && epicListener != null) {
+                epicListener.onSubtaskAdded(subtask);
+            }
+            replaceSubtaskState(subtask.getId(), subtasksMap.get(subtask.getId()));
         }
         updateEpicStatus();
         updateDatesAndDuration();
     }
 
-    public void updateSubtask(Subtask subtask) {
-        if (subtasksMap.containsKey(subtask.getId())) {
-            subtasksMap.put(subtask.getId(), subtask);
+    public void updateSubtasks(Collection<Subtask> subtasks) {
+        ensureExclusive();
+        for (Subtask subtask : subtasks) {
+            if (!subtaskStates.containsKey(subtask.getId())) {
+                continue;
+            }
+            Subtask oldSubtask = subtasksMap.put(subtask.getId(), subtask);
+            if (epicListener != null) {
+                epicListener.onSubtaskUpdated(oldSubtask, subtask);
+            }
+            replaceSubtaskState(subtask.getId(), subtask);
+        }
+        updateEpicStatus();
+        updateDatesAndDuration();
+    }
+
+    public void deleteSubtasks(Collection<Integer> ids) {
+        ensureExclusive();
+        for (int id : ids) {
+            if (!subtaskStates.containsKey(id)) {
+                continue;
+            }
+            Subtask removedSubtask = subtasksMap.remove(id);
+            if (removedSubtask != null && epicListener != null) {
+                epicListener.onSubtaskRemoved(removedSubtask);
+            }
+            replaceSubtaskState(id, null);
         }
         updateEpicStatus();
         updateDatesAndDuration();
     }
 
     public List<Subtask> getSubtasks() {
+        if (subtasksMap == null) {
+            List<Subtask> subtasks = new ArrayList<>(subtaskStates.size());
+            subtaskStates.forEach((subtaskId, state) -> subtasks.add(state.toSubtask(subtaskId, id)));
+            return Collections.unmodifiableList(subtasks);
+        }
         return subtasksMap.values().stream().toList();
     }
 
+    //Неизменяемое представление подзадач без копирования. У снимка эпика из истории подзадачи
+    //восстанавливаются, поэтому представление совпадает с getSubtasks
+    public Collection<Subtask> getSubtasksView() {
+        if (subtasksMap == null) {
+            return getSubtasks();
+        }
+        return Collections.unmodifiableCollection(subtasksMap.values());
+    }
+
     public void deleteSubtask(int id) {
-        subtasksMap.remove(id);
-        updateEpicStatus();
-        updateDatesAndDuration();
+        if (!subtaskStates.containsKey(id)) {
+            return;
+        }
+        ensureExclusive();
+        Subtask removedSubtask = subtasksMap.remove(id);
+        if (removedSubtask != null && epicListener != null) {
+            epicListener.onSubtaskRemoved(removedSubtask);
+        }
+        applySubtaskState(id, null);
     }
 
     public void clearSubtasks() {
-        subtasksMap.clear();
+        if (epicListener != null) {
+            getSubtasks().forEach(epicListener::onSubtaskRemoved);
+        }
+        subtasksMap = new IntObjectHashMap<>();
+        subtaskStates = new IntObjectHashMap<>();
+        sharedStates = false;
+        startTimes.clear();
+        endTimes.clear();
+        subtaskNew = 0;
+        subtaskDone = 0;
+        totalDurationMinutes = 0;
         updateEpicStatus();
-        this.startTime = null;
-        this.duration = null;
-        this.endTime = null;
+        storeStartSeconds(NO_TIME);
+        storeDurationMinutes(NO_TIME);
+        this.endSeconds = NO_TIME;
+        this.endNanos = 0;
+        if (epicListener != null) {
+            epicListener.onEpicDatesChanged(this);
+        }
     }
 
     public boolean hasSubtask(int id) {
-        return subtasksMap.containsKey(id);
+        return subtaskStates.containsKey(id);
     }
 
     public boolean isEmpty() {
-        return subtasksMap.isEmpty();
+        return subtaskStates.isEmpty();
+    }
+
+    public void setEpicListener(EpicListener epicListener) {
+        this.epicListener = epicListener;
     }
 
     @Override
@@ -83,45 +213,143 @@ public class Epic extends Task {
 
     @Override
     public LocalDateTime getEndTime() {
-        return endTime;
+        return endSeconds != NO_TIME ? toDateTime(endSeconds, endNanos) : null;
+    }
+
+    @Override
+    public long getEndSeconds() {
+        return endSeconds;
+    }
+
+    //Перед изменением отделяет таблицу состояний от снимков, а у самого снимка восстанавливает подзадачи
+    private void ensureExclusive() {
+        if (sharedStates) {
+            subtaskStates = new IntObjectHashMap<>(subtaskStates);
+            sharedStates = false;
+        }
+        if (subtasksMap == null) {
+            subtasksMap = new IntObjectHashMap<>(subtaskStates.size());
+            subtaskStates.forEach((subtaskId, state) -> {
+                subtasksMap.put(subtaskId, state.toSubtask(subtaskId, id));
+                addCount(startTimes, state.startSeconds(), state.startNanos());
+                addCount(endTimes, state.endSeconds(), state.startNanos());
+            });
+        }
+    }
+
+    //Заменяет вклад подзадачи в накопленные значения эпика и пересчитывает их за O(log n)
+    private void applySubtaskState(int id, Subtask subtask) {
+        replaceSubtaskState(id, subtask);
+        updateEpicStatus();
+        updateDatesAndDuration();
+    }
+
+    private void replaceSubtaskState(int id, Subtask subtask) {
+        SubtaskState oldState = subtask != null
+                ? subtaskStates.put(id, new SubtaskState(subtask))
+                : subtaskStates.remove(id);
+        if (oldState != null) {
+            oldState.exclude(this);
+        }
+        if (subtask != null) {
+            subtaskStates.get(id).include(this);
+        }
     }
 
     private void updateDatesAndDuration() {
-        this.startTime = subtasksMap.values().stream()
-                .filter(subtask -> subtask.startTime != null)
-                .min(Comparator.comparing(subtask -> subtask.startTime))
-                .map(subtask -> subtask.startTime)
-                .orElse(null);
-
-        this.duration = Duration.ofMinutes(
-                subtasksMap.values().stream()
-                        .filter(subtask -> subtask.duration != null)
-                        .mapToLong(subtask -> subtask.duration.toMinutes())
-                        .sum()
-        );
-
-        this.endTime = subtasksMap.values().stream()
-                .filter(subtask -> subtask.startTime != null)
-                .max(Comparator.comparing(Task::getEndTime))
-                .map(Task::getEndTime)
-                .orElse(null);
+        TimePoint start = startTimes.isEmpty() ? null : startTimes.firstKey();
+        TimePoint end = endTimes.isEmpty() ? null : endTimes.lastKey();
+        storeStartSeconds(start != null ? start.seconds() : NO_TIME, start != null ? start.nanos() : 0);
+        storeDurationMinutes(totalDurationMinutes);
+        this.endSeconds = end != null ? end.seconds() : NO_TIME;
+        this.endNanos = end != null ? end.nanos() : 0;
+        if (epicListener != null) {
+            epicListener.onEpicDatesChanged(this);
+        }
     }
 
     private void updateEpicStatus() {
-        int subtaskNew = 0;
-        int subtaskDone = 0;
-        for (Subtask subtask : subtasksMap.values()) {
-            switch (subtask.getTaskStatus()) {
-                case NEW -> subtaskNew++;
-                case DONE -> subtaskDone++;
-            }
-        }
-        if (subtaskNew == subtasksMap.size()) {
+        Status oldStatus = this.taskStatus;
+        if (subtaskNew == subtaskStates.size()) {
             this.taskStatus = Status.NEW;
-        } else if (subtaskDone == subtasksMap.size()) {
+        } else if (subtaskDone == subtaskStates.size()) {
             this.taskStatus = Status.DONE;
         } else {
             this.taskStatus = Status.IN_PROGRESS;
         }
+        if (oldStatus != this.taskStatus && epicListener != null) {
+            epicListener.onEpicStatusChanged(this);
+        }
+    }
+
+    private static void addCount(NavigableMap<TimePoint, Integer> counts, long seconds, int nanos) {
+        if (seconds != NO_TIME) {
+            counts.merge(new TimePoint(seconds, nanos), 1, Integer::sum);
+        }
+    }
+
+    private static void removeCount(NavigableMap<TimePoint, Integer> counts, long seconds, int nanos) {
+        if (seconds != NO_TIME) {
+            counts.computeIfPresent(new TimePoint(seconds, nanos), (k, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    private record TimePoint(long seconds, int nanos) implements Comparable<TimePoint> {
+
+        @Override
+        public int compareTo(TimePoint other) {
+            int bySeconds = Long.compare(seconds, other.seconds);
+            return bySeconds != 0 ? bySeconds : Integer.compare(nanos, other.nanos);
+        }
+    }
+
+    //Значения подзадачи на момент последнего добавления/обновления в эпике
+    //Время хранится в примитивах, поэтому состояние не держит объектов даты
+    private record SubtaskState(String name, String description, Status status, long startSeconds,
+                                int startNanos, long endSeconds, long durationMinutes) {
+
+        private SubtaskState(Subtask subtask) {
+            this(subtask.getTaskName(),
+                    subtask.getTaskDescription(),
+                    subtask.getTaskStatus(),
+                    subtask.getStartSeconds(),
+                    subtask.getStartNanos(),
+                    subtask.getEndSeconds(),
+                    subtask.getDurationMinutes());
+        }
+
+        private Subtask toSubtask(int id, int epicId) {
+            Subtask subtask = new Subtask(name, description, epicId);
+            subtask.setId(id);
+            subtask.setTaskStatus(status);
+            subtask.storeStartSeconds(startSeconds, startNanos);
+            subtask.storeDurationMinutes(durationMinutes);
+            return subtask;
+        }
+
+        private void include(Epic epic) {
+            switch (status) {
+                case NEW -> epic.subtaskNew++;
+                case DONE -> epic.subtaskDone++;
+            }
+            if (durationMinutes != NO_TIME) {
+                epic.totalDurationMinutes += durationMinutes;
+            }
+            //Длительность задается в минутах, поэтому доли секунды окончания совпадают с началом
+            addCount(epic.startTimes, startSeconds, startNanos);
+            addCount(epic.endTimes, endSeconds, startNanos);
+        }
+
+        private void exclude(Epic epic) {
+            switch (status) {
+                case NEW -> epic.subtaskNew--;
+                case DONE -> epic.subtaskDone--;
+            }
+            if (durationMinutes != NO_TIME) {
+                epic.totalDurationMinutes -= durationMinutes;
+            }
+            removeCount(epic.startTimes, startSeconds, startNanos);
+            removeCount(epic.endTimes, endSeconds, startNanos);
+        }
     }
 }
@@ -0,0 +1,13 @@
+public interface EpicListener {
+
+    void onSubtaskAdded(Subtask subtask);
+
+    void onSubtaskUpdated(Subtask oldSubtask, Subtask newSubtask);
+
+    void onSubtaskRemoved(Subtask subtask);
+
+    void onEpicStatusChanged(Epic epic);
+
+    void onEpicDatesChanged(Epic epic);
+
+}
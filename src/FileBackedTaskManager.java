@@ -1,261 +1,634 @@
-import java.io.FileWriter;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-public class FileBackedTaskManager extends InMemoryTaskManager {
+public class FileBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
 
     private final Path tasksFile;
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+    private final Path journalFile;
+    private final PersistentHistoryManager historyLog;
+    //Менеджер загружен из файла и продолжает его журнал истории
+    private boolean historyLogChecked;
+    private final PersistenceMode persistenceMode;
+    private SnapshotFormat snapshotFormat = SnapshotFormat.CSV;
+    private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private int journalRecords;
+    //При загрузке в конце журнала найдена недописанная запись
+    private boolean tornJournal;
+    //Отложенная запись: изменения копятся и сбрасываются одной операцией ввода-вывода
+    private final StringBuilder pendingRecords = new StringBuilder();
+    private int pendingMutations;
+    private long firstPendingNanos;
+    private boolean hasPending;
+    private boolean writeBehind;
+    private int maxBatchSize = 1;
+    private long maxDelayNanos;
+    private Durability durability = Durability.WRITE;
+    private final CsvTaskCodec csvCodec = new CsvTaskCodec();
     public static final String CSV_HEADER = "id,type,name,status,description,start time,duration,epic";
-    private static final String NULL_CSV_VALUE = "null";
-    private static final int COLUMN_ID = 0;
-    private static final int COLUMN_TYPE = 1;
-    private static final int COLUMN_NAME = 2;
-    private static final int COLUMN_STATUS = 3;
-    private static final int COLUMN_DESCRIPTION = 4;
-    private static final int COLUMN_START_TIME = 5;
-    private static final int COLUMN_DURATION = 6;
-    private static final int COLUMN_EPIC = 7;
+    private static final int WRITE_CHUNK_SIZE = 8192;
+    public static final String JOURNAL_FILE_SUFFIX = ".journal";
+    public static final String HISTORY_FILE_SUFFIX = ".history";
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+    //Предел отложенных записей: дальше они сбрасываются без fsync даже при уровне NONE
+    public static final int MAX_PENDING_RECORDS = 10_000;
+    private static final String JOURNAL_PUT = "PUT";
+    private static final String JOURNAL_DELETE = "DELETE";
+    private static final String JOURNAL_CLEAR = "CLEAR";
 
     public FileBackedTaskManager(Path tasksFile) {
-        super();
+        this(tasksFile, PersistenceMode.SNAPSHOT);
+    }
+
+    public FileBackedTaskManager(Path tasksFile, PersistenceMode persistenceMode) {
+        this(tasksFile, persistenceMode, new PersistentHistoryManager(Managers.getDefaultHistory(),
+                tasksFile.resolveSibling(tasksFile.getFileName() + HISTORY_FILE_SUFFIX)));
+    }
+
+    private FileBackedTaskManager(Path tasksFile, PersistenceMode persistenceMode,
+                                  PersistentHistoryManager historyLog) {
+        super(historyLog);
+        this.historyLog = historyLog;
         this.tasksFile = tasksFile;
+        this.journalFile = tasksFile.resolveSibling(tasksFile.getFileName() + JOURNAL_FILE_SUFFIX);
+        this.persistenceMode = persistenceMode;
     }
 
     @Override
     public void createTask(Task task) {
         super.createTask(task);
-        save();
+        persistPut(task);
     }
 
     @Override
     public void createEpic(Epic epic) {
         super.createEpic(epic);
-        save();
+        persistPut(epic);
     }
 
     @Override
     public void createSubtask(Subtask subtask) {
         super.createSubtask(subtask);
-        save();
+        persistPut(subtask);
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        return registerView(super.getTaskById(id));
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        return registerView(super.getEpicById(id));
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        return registerView(super.getSubtaskById(id));
     }
 
     @Override
     public void clearTasks() {
         super.clearTasks();
-        save();
+        persistClear(TasksTypes.TASK);
     }
 
     @Override
     public void clearEpics() {
         super.clearEpics();
-        save();
+        persistClear(TasksTypes.EPIC);
     }
 
     @Override
     public void clearSubtasks() {
         super.clearSubtasks();
-        save();
+        persistClear(TasksTypes.SUBTASK);
     }
 
     @Override
     public void deleteTaskById(int id) {
         super.deleteTaskById(id);
-        save();
+        persistDelete(TasksTypes.TASK, id);
     }
 
     @Override
     public void deleteEpicById(int id) {
         super.deleteEpicById(id);
-        save();
+        persistDelete(TasksTypes.EPIC, id);
     }
 
     @Override
     public void deleteSubtaskById(int id) {
         super.deleteSubtaskById(id);
-        save();
+        persistDelete(TasksTypes.SUBTASK, id);
     }
 
     @Override
     public void updateTask(Task task) {
         super.updateTask(task);
-        save();
+        persistPut(task);
     }
 
     @Override
     public void updateEpic(Epic epic) {
         super.updateEpic(epic);
-        save();
+        persistPut(epic);
     }
 
     @Override
     public void updateSubtask(Subtask subtask) {
         super.updateSubtask(subtask);
-        save();
+        persistPut(subtask);
     }
 
-    public static FileBackedTaskManager loadFromFile(Path tasksFile) {
-        FileBackedTaskManager taskManager = new FileBackedTaskManager(tasksFile);
+    //Пакет сохраняется одной записью на диск
+    @Override
+    public void createAll(List<? extends Task> tasks) {
+        super.createAll(tasks);
+        persistPutAll(tasks);
+    }
 
-        String content;
-        try {
-            content = Files.readString(tasksFile);
-        } catch (IOException ex) {
-            throw new ManagerReadException("Ошибка чтения данных");
+    @Override
+    public void updateAll(List<? extends Task> tasks) {
+        super.updateAll(tasks);
+        persistPutAll(tasks);
+    }
+
+    @Override
+    public void deleteAll(Collection<Integer> ids) {
+        //Тип нужен записям журнала, поэтому определяется до удаления
+        Map<Integer, TasksTypes> types = new LinkedHashMap<>();
+        for (int id : ids) {
+            Task task = findTask(id);
+            if (task != null) {
+                types.put(id, CsvTaskCodec.typeOf(task));
+            }
         }
+        super.deleteAll(ids);
+        if (persistenceMode == PersistenceMode.JOURNAL) {
+            types.forEach((id, type) ->
+                    addJournalRecord(JOURNAL_DELETE + "," + type + "," + id + System.lineSeparator()));
+        }
+        registerMutation();
+    }
 
-        int maxId = 0;
-        String[] splitContent = content.split(System.lineSeparator());
+    public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        this.snapshotFormat = snapshotFormat;
+    }
+
+    public void setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    //Изменения сбрасываются на диск, когда их накопится maxBatchSize или с первого пройдет maxDelay.
+    //Фонового потока нет, maxDelay проверяется при следующем изменении: после пакетной операции
+    //нужно вызвать flush(), sync() или close()
+    public void setWriteBehind(int maxBatchSize, Duration maxDelay) {
+        this.writeBehind = true;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+    }
+
+    public void disableWriteBehind() {
+        flush();
+        this.writeBehind = false;
+        this.maxBatchSize = 1;
+        this.maxDelayNanos = 0;
+    }
+
+    //История сохраняется в файл рядом со снимком. Менеджер, загруженный из файла с историей, ведет ее сам
+    public void enableHistoryPersistence() {
+        historyLogChecked = true;
+        historyLog.enable(durability == Durability.FSYNC);
+    }
+
+    //Уровень надежности для автоматических сбросов и flush() без параметров
+    public void setDurability(Durability durability) {
+        this.durability = durability;
+    }
+
+    public void flush() {
+        flush(durability);
+    }
+
+    //Хвост отложенных изменений пишется при завершении работы даже при уровне NONE
+    @Override
+    public void close() {
+        flush(writtenDurability());
+    }
+
+    public void sync() {
+        flush(Durability.FSYNC);
+    }
 
-        //Начинаем со второй строки, т.к. первая - это заголовок
-        for (int i = 1; i < splitContent.length; i++) {
-            Task task = taskManager.fromString(splitContent[i]);
-            if (task == null) {
-                continue;
+    public void flush(Durability durability) {
+        if (durability == Durability.NONE) {
+            return;
+        }
+
+        //История пишется после задач, чтобы при загрузке ее просмотры ссылались на сохраненные задачи
+        if (pendingMutations > 0) {
+            if (!historyLogChecked) {
+                historyLog.discardStaleLog();
+                historyLogChecked = true;
             }
-            switch (task) {
-                case Epic epic -> taskManager.epicsMap.put(epic.getId(), epic);
-                case Subtask subtask -> {
-                    taskManager.epicsMap.get(subtask.getEpicId()).addSubtask(subtask.getId(), subtask);
-                    taskManager.addTaskToSortedList(subtask);
-                }
-                default -> {
-                    taskManager.tasksMap.put(task.getId(), task);
-                    taskManager.addTaskToSortedList(task);
+            if (persistenceMode == PersistenceMode.SNAPSHOT) {
+                save();
+                if (durability == Durability.FSYNC) {
+                    force(tasksFile);
                 }
+            } else {
+                appendJournal(durability == Durability.FSYNC);
             }
-            if (task.getId() > maxId) {
-                maxId = task.getId();
+            pendingMutations = 0;
+
+            if (persistenceMode == PersistenceMode.JOURNAL && journalRecords >= checkpointInterval) {
+                checkpoint();
             }
         }
+        historyLog.flush(durability == Durability.FSYNC);
+        hasPending = false;
+    }
+
+    //Сворачивает журнал в полный снимок и очищает его
+    public void checkpoint() {
+        if (persistenceMode == PersistenceMode.SNAPSHOT) {
+            save();
+            historyLog.compact(durability == Durability.FSYNC);
+            return;
+        }
+
+        //Снимок подменяется атомарно; если журнал не успеет удалиться,
+        //его повторное применение к новому снимку даст то же состояние
+        Path tmpFile = tasksFile.resolveSibling(tasksFile.getFileName() + ".tmp");
+        save(tmpFile);
+        if (durability == Durability.FSYNC) {
+            force(tmpFile);
+        }
+        try {
+            Files.move(tmpFile, tasksFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(journalFile);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сохранения снимка");
+        }
+        //Снимок уже содержит все накопленные изменения
+        journalRecords = 0;
+        pendingRecords.setLength(0);
+        pendingMutations = 0;
+        historyLog.compact(durability == Durability.FSYNC);
+    }
+
+    public static FileBackedTaskManager loadFromFile(Path tasksFile) {
+        return loadFromFile(tasksFile, PersistenceMode.SNAPSHOT);
+    }
+
+    public static FileBackedTaskManager loadFromFile(Path tasksFile, PersistenceMode persistenceMode) {
+        return loadFromFile(tasksFile, persistenceMode, 1);
+    }
+
+    //При parallelism > 1 снимок разбирается по сегментам (задачи, диапазоны эпиков) в нескольких потоках
+    public static FileBackedTaskManager loadFromFile(Path tasksFile, PersistenceMode persistenceMode,
+                                                     int parallelism) {
+        FileBackedTaskManager taskManager = new FileBackedTaskManager(tasksFile, persistenceMode);
+
+        SnapshotLoader loader = new SnapshotLoader(taskManager);
+        boolean isBinary = Files.exists(tasksFile) && BinaryTaskSnapshot.isBinarySnapshot(tasksFile);
+        if (isBinary) {
+            //Сохраняем снимок в том же формате, в котором он был прочитан
+            taskManager.setSnapshotFormat(SnapshotFormat.BINARY);
+        }
+
+        //В режиме журнала снимок появляется только при первом сохранении, до этого он пуст
+        boolean hasSnapshot = persistenceMode != PersistenceMode.JOURNAL || Files.exists(tasksFile)
+                || !Files.exists(taskManager.journalFile);
+        if (hasSnapshot) {
+            readSnapshot(tasksFile, isBinary, parallelism, loader);
+        }
+        taskManager.addTasksToSortedList(loader.getTimedTasks());
+        int maxId = loader.getMaxId();
+
+        if (persistenceMode == PersistenceMode.JOURNAL) {
+            maxId = Math.max(maxId, taskManager.replayJournal());
+        }
 
         //Обновляем счетчик ID
         taskManager.setTaskId(maxId + 1);
 
+        taskManager.historyLog.load(taskManager::findTask);
+        taskManager.historyLogChecked = true;
+
+        //Недописанная запись отбрасывается, иначе следующие записи журнала окажутся после нее
+        if (taskManager.tornJournal) {
+            taskManager.checkpoint();
+        }
+
         return taskManager;
     }
 
-    private Task fromString(String value) {
-        String[] splitRow = value.split(",");
+    private static void readSnapshot(Path tasksFile, boolean isBinary, int parallelism, SnapshotLoader loader) {
+        if (parallelism > 1) {
+            ParallelSnapshotLoader.load(tasksFile, isBinary, parallelism, loader);
+        } else if (isBinary) {
+            BinaryTaskSnapshot.read(tasksFile, loader);
+        } else {
+            readCsvSnapshot(tasksFile, loader);
+        }
+    }
 
-        TasksTypes type = TasksTypes.valueOf(splitRow[COLUMN_TYPE]);
-        switch (type) {
-            case TasksTypes.EPIC:
-                if (!isEpicExists(Integer.parseInt(splitRow[COLUMN_ID]))) {
-                    Epic epic = new Epic(
-                            splitRow[COLUMN_NAME],
-                            splitRow[COLUMN_DESCRIPTION]);
-                    epic.setId(Integer.parseInt(splitRow[COLUMN_ID]));
-                    return epic;
-                }
-                break;
-            case TasksTypes.SUBTASK:
-                if (!isSubtaskExists(Integer.parseInt(splitRow[COLUMN_ID]))) {
-                    //Предположим (согласно логике в save(), что в файле всегда сначала идет эпик,
-                    // а потом его подзадачи, по порядку
-                    // Более сложные проверки по ТЗ пока не требуются
-                    if (isEpicExists(Integer.parseInt(splitRow[COLUMN_EPIC]))) {
-                        Subtask subtask = new Subtask(
-                                splitRow[COLUMN_NAME],
-                                splitRow[COLUMN_DESCRIPTION],
-                                Integer.parseInt(splitRow[COLUMN_EPIC]));
-                        subtask.setId(Integer.parseInt(splitRow[COLUMN_ID]));
-                        subtask.setTaskStatus(Status.valueOf(splitRow[COLUMN_STATUS]));
-                        if (!splitRow[COLUMN_START_TIME].equals(NULL_CSV_VALUE)) {
-                            subtask.setStartTime(LocalDateTime.parse(splitRow[COLUMN_START_TIME], formatter));
-                        }
-                        if (!splitRow[COLUMN_DURATION].equals(NULL_CSV_VALUE)) {
-                            subtask.setDuration(Duration.ofMinutes(Long.parseLong(splitRow[COLUMN_DURATION])));
-                        }
-                        return subtask;
+    private static void readCsvSnapshot(Path tasksFile, Consumer<Task> consumer) {
+        CsvTaskCodec codec = new CsvTaskCodec();
+        try (BufferedReader reader = Files.newBufferedReader(tasksFile, StandardCharsets.UTF_8)) {
+            CsvTaskCodec.RecordReader records = new CsvTaskCodec.RecordReader(reader);
+            //Первая строка - это заголовок
+            CharSequence record = records.next();
+            while ((record = records.next()) != null) {
+                consumer.accept(codec.decode(record));
+            }
+        } catch (IOException ex) {
+            throw new ManagerReadException("Ошибка чтения данных");
+        }
+    }
+
+    //Применяет к загруженному снимку записи журнала, возвращает максимальный встреченный id
+    private int replayJournal() {
+        if (!Files.exists(journalFile)) {
+            return 0;
+        }
+
+        int maxId = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            CsvTaskCodec.RecordReader records = new CsvTaskCodec.RecordReader(reader);
+            CharSequence record;
+            while ((record = records.next()) != null) {
+                try {
+                    maxId = Math.max(maxId, applyJournalRecord(record));
+                } catch (RuntimeException ex) {
+                    //Последняя запись могла быть записана не полностью
+                    if (records.next() != null) {
+                        throw new ManagerReadException("Ошибка чтения журнала");
                     }
+                    tornJournal = true;
+                    break;
                 }
-                break;
-            case TasksTypes.TASK:
-                if (!isTaskExists(Integer.parseInt(splitRow[COLUMN_ID]))) {
-                    Task task = new Task(
-                            splitRow[COLUMN_NAME],
-                            splitRow[COLUMN_DESCRIPTION]);
-                    task.setId(Integer.parseInt(splitRow[COLUMN_ID]));
-                    task.setTaskStatus(Status.valueOf(splitRow[COLUMN_STATUS]));
-                    if (!splitRow[COLUMN_START_TIME].equals(NULL_CSV_VALUE)) {
-                        task.setStartTime(LocalDateTime.parse(splitRow[COLUMN_START_TIME], formatter));
-                    }
-                    if (!splitRow[COLUMN_DURATION].equals(NULL_CSV_VALUE)) {
-                        task.setDuration(Duration.ofMinutes(Long.parseLong(splitRow[COLUMN_DURATION])));
-                    }
-                    return task;
+                journalRecords++;
+            }
+        } catch (IOException ex) {
+            throw new ManagerReadException("Ошибка чтения журнала");
+        }
+        return maxId;
+    }
+
+    //Записи журнала задают итоговое состояние задачи, поэтому их повторное применение безопасно
+    private int applyJournalRecord(CharSequence record) {
+        //Записи PUT разбираются кодеком прямо из буфера, остальные короткие и редкие
+        if (isJournalPut(record)) {
+            return applyJournalPut(csvCodec.decode(record, JOURNAL_PUT.length() + 1));
+        }
+
+        String[] splitRecord = record.toString().split(",", 2);
+        switch (splitRecord[0]) {
+            case JOURNAL_DELETE -> {
+                String[] splitRow = splitRecord[1].split(",");
+                int id = Integer.parseInt(splitRow[1]);
+                switch (TasksTypes.valueOf(splitRow[0])) {
+                    case EPIC -> super.deleteEpicById(id);
+                    case SUBTASK -> super.deleteSubtaskById(id);
+                    case TASK -> super.deleteTaskById(id);
+                }
+                return id;
+            }
+            case JOURNAL_CLEAR -> {
+                switch (TasksTypes.valueOf(splitRecord[1])) {
+                    case EPIC -> super.clearEpics();
+                    case SUBTASK -> super.clearSubtasks();
+                    case TASK -> super.clearTasks();
                 }
-                break;
-            default:
-                return null;
+                return 0;
+            }
+            default -> throw new ManagerReadException("Неизвестная запись журнала: " + record);
         }
-        return null;
     }
 
-    private void save() {
-        try (FileWriter fileWriter =
-                     new FileWriter(this.tasksFile.toString(), StandardCharsets.UTF_8)) {
-            //Если save без параметров, то получается, что мы каждый раз перезаписываем файл
-            fileWriter.append(CSV_HEADER).append(System.lineSeparator());
+    private static boolean isJournalPut(CharSequence record) {
+        if (record.length() <= JOURNAL_PUT.length() || record.charAt(JOURNAL_PUT.length()) != ',') {
+            return false;
+        }
+        for (int i = 0; i < JOURNAL_PUT.length(); i++) {
+            if (record.charAt(i) != JOURNAL_PUT.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int applyJournalPut(Task task) {
+        switch (task) {
+            case Epic epic -> {
+                //В записи эпика нет подзадач, поэтому они переносятся из сохраненного эпика
+                Epic storedEpic = epicsMap.get(epic.getId());
+                if (storedEpic != null) {
+                    epic.addSubtasks(storedEpic.getSubtasks());
+                    super.updateEpic(epic);
+                } else {
+                    putEpic(epic);
+                }
+            }
+            case Subtask subtask -> {
+                Subtask oldSubtask = subtasksMap.get(subtask.getId());
+                removeTaskFromSortedList(oldSubtask);
+                if (oldSubtask != null) {
+                    epicsMap.get(oldSubtask.getEpicId()).updateSubtask(subtask);
+                } else if (isEpicExists(subtask.getEpicId())) {
+                    epicsMap.get(subtask.getEpicId()).addSubtask(subtask.getId(), subtask);
+                }
+                addTaskToSortedList(subtask);
+            }
+            default -> {
+                removeTaskFromSortedList(tasksMap.get(task.getId()));
+                putTask(task);
+                addTaskToSortedList(task);
+            }
+        }
+        return task.getId();
+    }
+
+    private void persistPut(Task task) {
+        if (persistenceMode == PersistenceMode.JOURNAL) {
+            //Задача могла быть не добавлена (нет эпика, неизвестный id)
+            if (task == null || !isStored(task)) {
+                return;
+            }
+            pendingRecords.append(JOURNAL_PUT).append(',');
+            csvCodec.encode(task, pendingRecords);
+            journalRecords++;
+        }
+        registerMutation();
+    }
+
+    private void persistPutAll(List<? extends Task> tasks) {
+        if (persistenceMode == PersistenceMode.JOURNAL) {
+            for (Task task : tasks) {
+                if (isStored(task)) {
+                    pendingRecords.append(JOURNAL_PUT).append(',');
+                    csvCodec.encode(task, pendingRecords);
+                    journalRecords++;
+                }
+            }
+        }
+        registerMutation();
+    }
 
-            for (Task task : getTasks()) {
-                fileWriter.append(toString(task));
+    private void persistDelete(TasksTypes type, int id) {
+        if (persistenceMode == PersistenceMode.JOURNAL) {
+            addJournalRecord(JOURNAL_DELETE + "," + type + "," + id + System.lineSeparator());
+        }
+        registerMutation();
+    }
+
+    private void persistClear(TasksTypes type) {
+        if (persistenceMode == PersistenceMode.JOURNAL) {
+            addJournalRecord(JOURNAL_CLEAR + "," + type + System.lineSeparator());
+        }
+        registerMutation();
+    }
+
+    private boolean isStored(Task task) {
+        return switch (task) {
+            case Epic epic -> epicsMap.get(epic.getId()) == epic;
+            case Subtask subtask -> subtasksMap.get(subtask.getId()) == subtask;
+            default -> tasksMap.get(task.getId()) == task;
+        };
+    }
+
+    private void addJournalRecord(String record) {
+        pendingRecords.append(record);
+        journalRecords++;
+    }
+
+    private void registerMutation() {
+        pendingMutations++;
+        schedulePending();
+    }
+
+    //Пока история не сохраняется, просмотры не приводят к записи на диск
+    private <T extends Task> T registerView(T task) {
+        if (task != null && historyLog.isLogging()) {
+            schedulePending();
+        }
+        return task;
+    }
+
+    //Просмотры сбрасываются по тем же правилам, что и изменения
+    private void schedulePending() {
+        int pending = pendingMutations + historyLog.getPendingCount();
+        if (!hasPending) {
+            hasPending = true;
+            firstPendingNanos = System.nanoTime();
+        }
+
+        if (!writeBehind) {
+            flush(Durability.WRITE);
+        } else if (pending >= MAX_PENDING_RECORDS) {
+            flush(writtenDurability());
+        } else if (pending >= maxBatchSize || System.nanoTime() - firstPendingNanos >= maxDelayNanos) {
+            flush(durability);
+        }
+    }
+
+    //Уровень надежности, при котором изменения хотя бы попадают в файл
+    private Durability writtenDurability() {
+        return durability == Durability.NONE ? Durability.WRITE : durability;
+    }
+
+    private void appendJournal(boolean fsync) {
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(pendingRecords));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
             }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи журнала");
+        }
+        pendingRecords.setLength(0);
+    }
+
+    private void force(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сохранения данных");
+        }
+    }
 
-            for (Epic epic : getEpics()) {
-                fileWriter.append(toString(epic));
-                for (Subtask subtask : getSubtasksOfEpic(epic.getId())) {
-                    fileWriter.append(toString(subtask));
+    private void save() {
+        save(tasksFile);
+    }
+
+    private void save(Path file) {
+        if (snapshotFormat == SnapshotFormat.BINARY) {
+            BinaryTaskSnapshot.write(file, snapshotOrder());
+            return;
+        }
+
+        try (Writer fileWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            //Если save без параметров, то получается, что мы каждый раз перезаписываем файл
+            StringBuilder chunk = new StringBuilder(WRITE_CHUNK_SIZE * 2);
+            char[] chars = new char[WRITE_CHUNK_SIZE * 2];
+            chunk.append(CSV_HEADER).append(System.lineSeparator());
+
+            //Строки кодируются в общий буфер, который сбрасывается в файл порциями
+            for (Task task : snapshotOrder()) {
+                csvCodec.encode(task, chunk);
+                if (chunk.length() >= WRITE_CHUNK_SIZE) {
+                    chars = writeChunk(fileWriter, chunk, chars);
                 }
             }
+            writeChunk(fileWriter, chunk, chars);
         } catch (IOException e) {
             throw new ManagerSaveException("Ошибка сохранения данных");
         }
     }
 
-    private String toString(Task task) {
-        String taskInString;
+    //Порядок записи снимка: задачи, затем каждый эпик со своими подзадачами
+    private Iterable<Task> snapshotOrder() {
+        return () -> Stream.concat(
+                tasksMap.values().stream(),
+                epicsMap.values().stream().flatMap(epic ->
+                        Stream.concat(Stream.of(epic), epic.getSubtasks().stream()))
+        ).iterator();
+    }
 
-        switch (task) {
-            case Epic epic -> taskInString =
-                    String.format("%d,%s,%s,%s,%s,%s,%s" + System.lineSeparator(),
-                            epic.getId(),
-                            TasksTypes.EPIC,
-                            epic.getTaskName(),
-                            epic.getTaskStatus(),
-                            epic.getTaskDescription(),
-                            epic.getStartTime() != null ? epic.getStartTime().format(formatter) : NULL_CSV_VALUE,
-                            epic.getDuration() != null ? epic.getDuration().toMinutes() : NULL_CSV_VALUE);
-            case Subtask subtask -> taskInString =
-                    String.format("%d,%s,%s,%s,%s,%s,%s,%d" + System.lineSeparator(),
-                            subtask.getId(),
-                            TasksTypes.SUBTASK,
-                            subtask.getTaskName(),
-                            subtask.getTaskStatus(),
-                            subtask.getTaskDescription(),
-                            subtask.getStartTime() != null ? subtask.getStartTime().format(formatter) : NULL_CSV_VALUE,
-                            subtask.getDuration() != null ? subtask.getDuration().toMinutes() : NULL_CSV_VALUE,
-                            subtask.getEpicId());
-            default -> taskInString =
-                    String.format("%d,%s,%s,%s,%s,%s,%s" + System.lineSeparator(),
-                            task.getId(),
-                            TasksTypes.TASK,
-                            task.getTaskName(),
-                            task.getTaskStatus(),
-                            task.getTaskDescription(),
-                            task.getStartTime() != null ? task.getStartTime().format(formatter) : NULL_CSV_VALUE,
-                            task.getDuration() != null ? task.getDuration().toMinutes() : NULL_CSV_VALUE);
-        }
-        return taskInString;
+    private static char[] writeChunk(Writer writer, StringBuilder chunk, char[] chars) throws IOException {
+        if (chunk.length() > chars.length) {
+            chars = new char[chunk.length()];
+        }
+        chunk.getChars(0, chunk.length(), chars, 0);
+        writer.write(chars, 0, chunk.length());
+        chunk.setLength(0);
+        return chars;
     }
 
     public static void main(String[] args) {
@@ -4,8 +4,18 @@ public interface HistoryManager {
 
     void add(Task task);
 
+    //Добавляет уже скопированную вызывающим задачу: реализации, которые копируют задачи, не копируют ее повторно
+    default void addSnapshot(Task snapshot) {
+        add(snapshot);
+    }
+
     void remove(int id);
 
     List<Task> getHistory();
 
+    //Количество просмотров, вытесненных из-за ограничения размера; у неограниченной истории их нет
+    default long getEvictedCount() {
+        return 0;
+    }
+
 }
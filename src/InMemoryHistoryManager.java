@@ -1,18 +1,27 @@
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class InMemoryHistoryManager implements HistoryManager {
 
-    private final Map<Integer, Node<Task>> historyList;
+    private final IntObjectMap<Node<Task>> historyList;
     private Node<Task> head;
     private Node<Task> tail;
     private int size;
+    private final int maxSize;
+    private long evictedCount;
 
     public InMemoryHistoryManager() {
-        historyList = new HashMap<>();
+        this(Integer.MAX_VALUE);
+    }
+
+    //При превышении maxSize из истории вытесняется самый старый просмотр
+    public InMemoryHistoryManager(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным");
+        }
+        historyList = new IntObjectHashMap<>();
         size = 0;
+        this.maxSize = maxSize;
     }
 
     @Override
@@ -21,14 +30,21 @@ public class InMemoryHistoryManager implements HistoryManager {
             return;
         }
 
-        Task taskClone;
-        switch (task) {
-            case Epic epic -> taskClone = new Epic(epic);
-            case Subtask subtask -> taskClone = new Subtask(subtask);
-            default -> taskClone = new Task(task);
+        addSnapshot(copyOf(task));
+    }
+
+    @Override
+    public void addSnapshot(Task snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+
+        remove(snapshot.getId());
+        linkLast(snapshot);
+        if (size > maxSize) {
+            remove(head.task.getId());
+            evictedCount++;
         }
-        remove(taskClone.getId());
-        linkLast(taskClone);
     }
 
     @Override
@@ -73,6 +89,27 @@ public class InMemoryHistoryManager implements HistoryManager {
         return tasksList;
     }
 
+    static Task copyOf(Task task) {
+        return switch (task) {
+            case Epic epic -> new Epic(epic);
+            case Subtask subtask -> new Subtask(subtask);
+            default -> new Task(task);
+        };
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+
     private void linkLast(Task task) {
         final Node<Task> oldTail = tail;
         final Node<Task> newNode = new Node<>(oldTail, task, null);
@@ -1,22 +1,48 @@
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
-public class InMemoryTaskManager implements TaskManager {
+public class InMemoryTaskManager extends AbstractTaskManager {
 
-    protected final Map<Integer, Task> tasksMap;
-    protected final Map<Integer, Epic> epicsMap;
-    protected Set<Task> sortedTasks;
+    protected final IntObjectMap<Task> tasksMap;
+    protected final IntObjectMap<Epic> epicsMap;
+    protected final IntObjectMap<Subtask> subtasksMap;
+    protected NavigableSet<Task> sortedTasks;
+    protected final IntervalTree<Task> tasksIntervals;
     private final HistoryManager historyManager;
+    private final AccessStatistics accessStatistics;
+    private final TaskStatusIndex statusIndex;
+    private final EpicListener subtasksIndexListener;
+    //Необязательная битовая карта слотов для быстрой проверки пересечений
+    private TimeSlotGrid timeGrid;
+    //Необязательная колоночная копия задач для агрегатных отчетов
+    private ColumnarTaskStore columnarStore;
     private int taskId;
 
     public InMemoryTaskManager() {
-        taskId = 1;
-        tasksMap = new HashMap<>();
-        epicsMap = new HashMap<>();
-        historyManager = Managers.getDefaultHistory();
+        this(Managers.getDefaultHistory());
+    }
+
+    public InMemoryTaskManager(HistoryManager historyManager) {
+        this(new IntObjectHashMap<>(), new IntObjectHashMap<>(), new IntObjectHashMap<>(), historyManager,
+                new TaskStatusIndex());
+    }
 
-        sortedTasks = new TreeSet<>(Comparator.comparing(task -> task.startTime));
+    protected InMemoryTaskManager(IntObjectMap<Task> tasksMap, IntObjectMap<Epic> epicsMap,
+                                  IntObjectMap<Subtask> subtasksMap, HistoryManager historyManager,
+                                  TaskStatusIndex statusIndex) {
+        taskId = 1;
+        this.tasksMap = tasksMap;
+        this.epicsMap = epicsMap;
+        this.subtasksMap = subtasksMap;
+        this.subtasksIndexListener = new SubtasksIndexListener();
+        this.historyManager = historyManager;
+        this.accessStatistics = new AccessStatistics();
+        this.statusIndex = statusIndex;
+
+        sortedTasks = new TreeSet<>(Task.START_TIME_ORDER);
+        tasksIntervals = new IntervalTree<>();
     }
 
     @Override
@@ -32,7 +58,7 @@ public class InMemoryTaskManager implements TaskManager {
 
         int newId = getAndIncrementId();
         task.setId(newId);
-        tasksMap.put(newId, task);
+        putTask(task);
 
         addTaskToSortedList(task);
     }
@@ -45,7 +71,7 @@ public class InMemoryTaskManager implements TaskManager {
 
         int newId = getAndIncrementId();
         epic.setId(newId);
-        epicsMap.put(newId, epic);
+        putEpic(epic);
     }
 
     @Override
@@ -78,28 +104,54 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public List<Subtask> getSubtasks() {
-        return this.getSubtasksMap().values().stream().toList();
+        return subtasksMap.values().stream().toList();
+    }
+
+    @Override
+    public Collection<Task> getTasksView() {
+        return Collections.unmodifiableCollection(tasksMap.values());
+    }
+
+    @Override
+    public Collection<Epic> getEpicsView() {
+        return Collections.unmodifiableCollection(epicsMap.values());
+    }
+
+    @Override
+    public Collection<Subtask> getSubtasksView() {
+        return Collections.unmodifiableCollection(subtasksMap.values());
+    }
+
+    @Override
+    public Collection<Subtask> getSubtasksOfEpicView(int epicId) {
+        return epicsMap.get(epicId).getSubtasksView();
+    }
+
+    @Override
+    public void forEachTask(Consumer<? super Task> action) {
+        tasksMap.values().forEach(action);
+        epicsMap.values().forEach(action);
+        subtasksMap.values().forEach(action);
     }
 
     @Override
     public Task getTaskById(int id) {
         Task task = tasksMap.get(id);
-        historyManager.add(task);
+        recordView(task);
         return task;
     }
 
     @Override
     public Epic getEpicById(int id) {
         Epic epic = epicsMap.get(id);
-        historyManager.add(epic);
+        recordView(epic);
         return epic;
     }
 
     @Override
     public Subtask getSubtaskById(int id) {
-        Map<Integer, Subtask> subtasksMap = getSubtasksMap();
         Subtask subtask = subtasksMap.get(id);
-        historyManager.add(subtask);
+        recordView(subtask);
         return subtask;
     }
 
@@ -120,7 +172,7 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public boolean isSubtaskExists(int id) {
-        return this.getSubtasksMap().containsKey(id);
+        return subtasksMap.containsKey(id);
     }
 
     @Override
@@ -128,17 +180,23 @@ public class InMemoryTaskManager implements TaskManager {
         tasksMap.keySet().forEach(
                 key -> {
                     historyManager.remove(key);
-                    sortedTasks.remove(tasksMap.get(key));
+                    removeTaskFromSortedList(tasksMap.get(key));
                 }
 
         );
         tasksMap.clear();
+        indexClear(TasksTypes.TASK);
     }
 
     @Override
     public void clearEpics() {
+        subtasksMap.values().forEach(this::removeTaskFromSortedList);
+        epicsMap.values().forEach(epic -> epic.setEpicListener(null));
         epicsMap.keySet().forEach(historyManager::remove);
         epicsMap.clear();
+        subtasksMap.clear();
+        indexClear(TasksTypes.EPIC);
+        indexClear(TasksTypes.SUBTASK);
     }
 
     @Override
@@ -148,7 +206,7 @@ public class InMemoryTaskManager implements TaskManager {
                 .forEach(epic -> {
                     epic.getSubtasks().forEach(subtask -> {
                         historyManager.remove(subtask.getId());
-                        sortedTasks.remove(subtask);
+                        removeTaskFromSortedList(subtask);
                     });
                     epic.clearSubtasks();
                 });
@@ -160,9 +218,7 @@ public class InMemoryTaskManager implements TaskManager {
             return;
         }
 
-        sortedTasks.remove(tasksMap.get(id));
-        tasksMap.remove(id);
-        historyManager.remove(id);
+        removeTask(id);
     }
 
     @Override
@@ -171,27 +227,18 @@ public class InMemoryTaskManager implements TaskManager {
             return;
         }
 
-        epicsMap.get(id).getSubtasks().forEach(subtask -> {
-            historyManager.remove(subtask.getId());
-            sortedTasks.remove(subtask);
-        });
-
-        epicsMap.remove(id);
-        historyManager.remove(id);
+        removeEpic(id);
     }
 
     @Override
     public void deleteSubtaskById(int id) {
-        Map<Integer, Subtask> subtasksMap = getSubtasksMap();
-
-        if (!subtasksMap.containsKey(id)) {
+        Subtask subtask = subtasksMap.get(id);
+        if (subtask == null) {
             return;
         }
 
-        sortedTasks.remove(getSubtaskById(id));
-
-        int epicId = subtasksMap.get(id).getEpicId();
-        epicsMap.get(epicId).deleteSubtask(id);
+        removeTaskFromSortedList(subtask);
+        epicsMap.get(subtask.getEpicId()).deleteSubtask(id);
         historyManager.remove(id);
     }
 
@@ -204,8 +251,8 @@ public class InMemoryTaskManager implements TaskManager {
                         " не была добавлена из-за пересечения во времени с другими задачами");
             }
 
-            sortedTasks.remove(tasksMap.get(task.getId()));
-            tasksMap.put(task.getId(), task);
+            removeTaskFromSortedList(tasksMap.get(task.getId()));
+            putTask(task);
 
             addTaskToSortedList(task);
         }
@@ -213,14 +260,22 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public void updateEpic(Epic epic) {
-        if (epicsMap.containsKey(epic.getId())) {
-            epicsMap.put(epic.getId(), epic);
+        Epic oldEpic = epicsMap.get(epic.getId());
+        if (oldEpic == null) {
+            return;
         }
+        //Подзадачи прежнего эпика уходят из индексов времени, иначе их интервалы дали бы ложные пересечения
+        oldEpic.getSubtasksView().forEach(this::removeTaskFromSortedList);
+        detachEpic(oldEpic);
+        putEpic(epic);
+        epic.getSubtasksView().forEach(this::addTaskToSortedList);
     }
 
     @Override
     public void updateSubtask(Subtask subtask) {
-        if (!epicsMap.containsKey(subtask.getEpicId())) {
+        //Неизвестная подзадача не должна попасть в индексы времени
+        Epic epic = epicsMap.get(subtask.getEpicId());
+        if (epic == null || !epic.hasSubtask(subtask.getId())) {
             return;
         }
 
@@ -229,58 +284,449 @@ public class InMemoryTaskManager implements TaskManager {
                     " не была добавлена из-за пересечения во времени с другими задачами");
         }
 
-        sortedTasks.remove(getSubtaskById(subtask.getId()));
-        epicsMap.get(subtask.getEpicId()).updateSubtask(subtask);
+        removeTaskFromSortedList(subtasksMap.get(subtask.getId()));
+        epic.updateSubtask(subtask);
 
         addTaskToSortedList(subtask);
     }
 
+    //Пакетное создание: пересечения проверяются один раз для всего пакета, id выделяются блоком,
+    //статус и даты каждого эпика пересчитываются один раз. Если проверка не прошла, ничего не меняется.
+    //Подзадачи пакета могут ссылаться только на уже существующие эпики
+    @Override
+    public void createAll(List<? extends Task> tasks) {
+        validateBatch(tasks, false);
+
+        int newId = reserveIds(tasks.size());
+        Map<Integer, List<Subtask>> subtasksByEpic = new LinkedHashMap<>();
+        List<Task> timedTasks = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            task.setId(newId++);
+            switch (task) {
+                case Epic epic -> putEpic(epic);
+                case Subtask subtask -> {
+                    subtasksByEpic.computeIfAbsent(subtask.getEpicId(), epicId -> new ArrayList<>()).add(subtask);
+                    timedTasks.add(subtask);
+                }
+                default -> {
+                    putTask(task);
+                    timedTasks.add(task);
+                }
+            }
+        }
+        subtasksByEpic.forEach((epicId, subtasks) -> epicsMap.get(epicId).addSubtasks(subtasks));
+        addTasksToSortedList(timedTasks);
+    }
+
+    //Пакетное обновление: все задачи должны существовать, подзадачи - оставаться в своих эпиках.
+    //Пересечения проверяются с новым положением задач пакета, а не со старым
+    @Override
+    public void updateAll(List<? extends Task> tasks) {
+        validateBatch(tasks, true);
+
+        Map<Integer, List<Subtask>> subtasksByEpic = new LinkedHashMap<>();
+        List<Task> timedTasks = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            switch (task) {
+                case Epic epic -> {
+                    detachEpic(epicsMap.get(epic.getId()));
+                    putEpic(epic);
+                }
+                case Subtask subtask -> {
+                    removeTaskFromSortedList(subtasksMap.get(subtask.getId()));
+                    subtasksByEpic.computeIfAbsent(subtask.getEpicId(), epicId -> new ArrayList<>()).add(subtask);
+                    timedTasks.add(subtask);
+                }
+                default -> {
+                    removeTaskFromSortedList(tasksMap.get(task.getId()));
+                    putTask(task);
+                    timedTasks.add(task);
+                }
+            }
+        }
+        subtasksByEpic.forEach((epicId, subtasks) -> epicsMap.get(epicId).updateSubtasks(subtasks));
+        addTasksToSortedList(timedTasks);
+    }
+
+    //Пакетное удаление задач любого типа, несуществующие id пропускаются
+    @Override
+    public void deleteAll(Collection<Integer> ids) {
+        Map<Integer, List<Integer>> subtaskIdsByEpic = new LinkedHashMap<>();
+        for (int id : ids) {
+            if (tasksMap.containsKey(id)) {
+                removeTask(id);
+            } else if (epicsMap.containsKey(id)) {
+                removeEpic(id);
+            } else if (subtasksMap.containsKey(id)) {
+                Subtask subtask = subtasksMap.get(id);
+                removeTaskFromSortedList(subtask);
+                historyManager.remove(id);
+                subtaskIdsByEpic.computeIfAbsent(subtask.getEpicId(), epicId -> new ArrayList<>()).add(id);
+            }
+        }
+        //Эпик мог быть удален в том же пакете вместе с подзадачами
+        subtaskIdsByEpic.forEach((epicId, subtaskIds) -> {
+            Epic epic = epicsMap.get(epicId);
+            if (epic != null) {
+                epic.deleteSubtasks(subtaskIds);
+            }
+        });
+    }
+
     @Override
     public List<Task> getHistory() {
         return historyManager.getHistory();
     }
 
+    @Override
+    public List<Task> getTasksByStatus(TasksTypes type, Status status) {
+        return statusIndex.getTasks(type, status);
+    }
+
+    @Override
+    public int getTasksCount(TasksTypes type) {
+        return statusIndex.count(type);
+    }
+
+    @Override
+    public int getTasksCount(TasksTypes type, Status status) {
+        return statusIndex.count(type, status);
+    }
+
+    @Override
+    public List<Task> getHotTasks(int k) {
+        List<Task> hotTasks = new ArrayList<>();
+        //Удаленные задачи могут оставаться в статистике, пока их не вытеснят, поэтому они пропускаются
+        for (int id : accessStatistics.getHotIds(Integer.MAX_VALUE)) {
+            if (hotTasks.size() >= k) {
+                break;
+            }
+            Task task = findTask(id);
+            if (task != null) {
+                hotTasks.add(task);
+            }
+        }
+        return hotTasks;
+    }
+
     @Override
     public Set<Task> getPrioritizedTasks() {
-        return sortedTasks;
+        return Collections.unmodifiableNavigableSet(sortedTasks);
+    }
+
+    //Задачи, начинающиеся в [from, to), за O(log N + k)
+    @Override
+    public List<Task> getTasksBetween(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return List.of();
+        }
+        return new ArrayList<>(sortedTasks.subSet(timeProbe(from, Integer.MIN_VALUE), true,
+                timeProbe(to, Integer.MIN_VALUE), false));
+    }
+
+    @Override
+    public List<Task> getTasksStartingAfter(LocalDateTime time, int limit) {
+        return firstTasks(sortedTasks.tailSet(timeProbe(time, Integer.MAX_VALUE), false), limit);
+    }
+
+    //Постраничный обход по времени начала: cursor == null - первая страница,
+    //далее передается nextCursor предыдущей страницы
+    @Override
+    public TimelinePage getTimelinePage(LocalDateTime cursor, int limit) {
+        checkPageLimit(limit);
+        NavigableSet<Task> rest = cursor == null ? sortedTasks
+                : sortedTasks.tailSet(timeProbe(cursor, Integer.MAX_VALUE), false);
+        List<Task> tasks = firstTasks(rest, limit);
+        //Курсор - это время начала, поэтому задачи с тем же началом, что и у последней, идут на эту же страницу
+        Task next = tasks.isEmpty() ? null : rest.higher(tasks.getLast());
+        while (next != null && isSameStart(next, tasks.getLast())) {
+            tasks.add(next);
+            next = rest.higher(next);
+        }
+        return new TimelinePage(tasks, next != null ? tasks.getLast().getStartTime() : null);
+    }
+
+    //Свободное окно ищется по дереву интервалов за O(log N)
+    @Override
+    protected long findFreeSeconds(long from, long duration, long step) {
+        return tasksIntervals.findFreeSlot(from, duration, step);
+    }
+
+    //Режим сетки: пересечения внутри горизонта сначала проверяются по битовой карте слотов.
+    //Свободные слоты означают отсутствие пересечений, занятые подтверждаются деревом интервалов,
+    //задачи за пределами горизонта проверяются только деревом
+    public void enableTimeGrid(LocalDateTime origin, Duration slotSize, Duration horizon) {
+        TimeSlotGrid grid = new TimeSlotGrid(origin, slotSize, horizon);
+        tasksIntervals.findOverlaps(grid.getOrigin(), grid.getHorizonEnd(), Integer.MIN_VALUE)
+                .forEach(task -> grid.occupy(task.getStartSeconds(), task.getEndSeconds()));
+        timeGrid = grid;
+    }
+
+    public void disableTimeGrid() {
+        timeGrid = null;
+    }
+
+    //Колоночное хранилище обновляется в тех же местах, что и индекс статусов.
+    //Объектный API остается прежним, а отчеты читают агрегаты из колонок
+    public ColumnarTaskStore enableColumnarStore() {
+        ColumnarTaskStore store = new ColumnarTaskStore();
+        tasksMap.values().forEach(task -> store.put(TasksTypes.TASK, task));
+        epicsMap.values().forEach(epic -> store.put(TasksTypes.EPIC, epic));
+        subtasksMap.values().forEach(subtask -> store.put(TasksTypes.SUBTASK, subtask));
+        columnarStore = store;
+        return store;
+    }
+
+    public ColumnarTaskStore getColumnarStore() {
+        return columnarStore;
     }
 
     @Override
     public boolean isTasksOverlapped(Task newTask) {
-        if (newTask.getStartTime() == null || newTask.getDuration() == null) {
+        //Проверка идет по примитивным полям задачи и не создает объектов
+        long endSeconds = newTask.getEndSeconds();
+        if (endSeconds == Task.NO_TIME || isGridFree(newTask.getStartSeconds(), endSeconds)) {
             return false;
         }
 
-        return getPrioritizedTasks().stream()
-                .filter(task -> !task.equals(newTask))
-                .anyMatch(task -> isPeriodsOverlapped(newTask.getStartTime(), newTask.getEndTime(),
-                        task.getStartTime(), task.getEndTime()));
+        return tasksIntervals.hasOverlap(newTask.getStartSeconds(), endSeconds, newTask.getId());
+    }
+
+    @Override
+    public List<Task> getOverlappingTasks(Task newTask) {
+        if (newTask.getEndSeconds() == Task.NO_TIME) {
+            return List.of();
+        }
 
+        return tasksIntervals.findOverlaps(newTask.getStartSeconds(), newTask.getEndSeconds(), newTask.getId());
     }
 
     public void addTaskToSortedList(Task task) {
-        if (task.startTime != null) {
+        if (task.getStartSeconds() != Task.NO_TIME) {
             sortedTasks.add(task);
         }
+        //Задачи без длительности не участвуют в проверке пересечений
+        if (task.getEndSeconds() != Task.NO_TIME) {
+            tasksIntervals.add(task.getId(), task.getStartSeconds(), task.getEndSeconds(), task);
+            if (timeGrid != null) {
+                timeGrid.occupy(task.getStartSeconds(), task.getEndSeconds());
+            }
+        }
+    }
+
+    protected Task findTask(int id) {
+        Task task = tasksMap.get(id);
+        if (task == null) {
+            task = epicsMap.get(id);
+        }
+        if (task == null) {
+            task = subtasksMap.get(id);
+        }
+        return task;
     }
 
     protected void setTaskId(int taskId) {
         this.taskId = taskId;
     }
 
-    private boolean isPeriodsOverlapped(LocalDateTime startDate1, LocalDateTime endDate1,
-                                        LocalDateTime startDate2, LocalDateTime endDate2) {
-        return !startDate1.isAfter(endDate2) && !endDate1.isBefore(startDate2);
+    protected void putTask(Task task) {
+        tasksMap.put(task.getId(), task);
+        indexPut(TasksTypes.TASK, task);
+    }
+
+    //Эпик попадает в таблицу последним, уже подписанным на изменения подзадач
+    protected void putEpic(Epic epic) {
+        epic.setEpicListener(subtasksIndexListener);
+        epic.getSubtasks().forEach(subtask -> {
+            subtasksMap.put(subtask.getId(), subtask);
+            indexPut(TasksTypes.SUBTASK, subtask);
+        });
+        indexPut(TasksTypes.EPIC, epic);
+        epicsMap.put(epic.getId(), epic);
+    }
+
+    private static List<Task> firstTasks(NavigableSet<Task> tasks, int limit) {
+        List<Task> result = new ArrayList<>(Math.min(limit, 64));
+        Iterator<Task> iterator = tasks.iterator();
+        while (result.size() < limit && iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    private static boolean isSameStart(Task first, Task second) {
+        return first.getStartSeconds() == second.getStartSeconds()
+                && first.getStartNanos() == second.getStartNanos();
+    }
+
+    //Сортированный список сравнивает задачи по времени начала, затем по id: проба с Integer.MIN_VALUE
+    //стоит перед задачами с тем же началом, с Integer.MAX_VALUE - после них
+    private static Task timeProbe(LocalDateTime time, int id) {
+        Task probe = new Task(null, null);
+        probe.setStartTime(time);
+        probe.setId(id);
+        return probe;
+    }
+
+    //Просмотр попадает и в историю, и в статистику обращений
+    private void recordView(Task task) {
+        historyManager.add(task);
+        if (task != null) {
+            accessStatistics.record(task.getId());
+        }
+    }
+
+    @Override
+    protected boolean isStoredAs(Task task) {
+        return switch (task) {
+            case Epic epic -> epicsMap.containsKey(epic.getId());
+            case Subtask subtask -> subtasksMap.containsKey(subtask.getId())
+                    && subtasksMap.get(subtask.getId()).getEpicId() == subtask.getEpicId();
+            default -> tasksMap.containsKey(task.getId());
+        };
+    }
+
+    @Override
+    protected boolean overlapsStoredTasks(long start, long end, Set<Integer> replacedIds) {
+        if (isGridFree(start, end)) {
+            return false;
+        }
+        if (replacedIds.isEmpty()) {
+            return tasksIntervals.hasOverlap(start, end, Integer.MIN_VALUE);
+        }
+        return tasksIntervals.findOverlaps(start, end, Integer.MIN_VALUE).stream()
+                .anyMatch(task -> !replacedIds.contains(task.getId()));
     }
 
-    private int getAndIncrementId() {
+    private boolean isGridFree(long start, long end) {
+        return timeGrid != null && timeGrid.contains(start, end) && timeGrid.isFree(start, end);
+    }
+
+    private void removeTask(int id) {
+        removeTaskFromSortedList(tasksMap.get(id));
+        tasksMap.remove(id);
+        indexRemove(TasksTypes.TASK, id);
+        historyManager.remove(id);
+    }
+
+    private void removeEpic(int id) {
+        Epic epic = epicsMap.remove(id);
+        detachEpic(epic);
+        epic.getSubtasks().forEach(subtask -> {
+            historyManager.remove(subtask.getId());
+            removeTaskFromSortedList(subtask);
+        });
+
+        historyManager.remove(id);
+    }
+
+    private void indexPut(TasksTypes type, Task task) {
+        statusIndex.put(type, task);
+        if (columnarStore != null) {
+            columnarStore.put(type, task);
+        }
+    }
+
+    private void indexRemove(TasksTypes type, int id) {
+        statusIndex.remove(type, id);
+        if (columnarStore != null) {
+            columnarStore.remove(id);
+        }
+    }
+
+    private void indexClear(TasksTypes type) {
+        statusIndex.clear(type);
+        if (columnarStore != null) {
+            columnarStore.clear(type);
+        }
+    }
+
+    private void detachEpic(Epic epic) {
+        epic.setEpicListener(null);
+        indexRemove(TasksTypes.EPIC, epic.getId());
+        epic.getSubtasks().forEach(subtask -> {
+            subtasksMap.remove(subtask.getId());
+            indexRemove(TasksTypes.SUBTASK, subtask.getId());
+        });
+    }
+
+    //Пакетное добавление при загрузке: сортировка один раз и построение дерева интервалов за O(N)
+    protected void addTasksToSortedList(List<Task> tasks) {
+        List<Task> timedTasks = new ArrayList<>(tasks.stream()
+                .filter(task -> task.getStartSeconds() != Task.NO_TIME)
+                .toList());
+        timedTasks.sort(Task.START_TIME_ORDER);
+        sortedTasks.addAll(timedTasks);
+        List<Task> intervals = timedTasks.stream()
+                .filter(task -> task.getEndSeconds() != Task.NO_TIME)
+                .toList();
+        tasksIntervals.addAll(intervals, Task::getId, Task::getStartSeconds, Task::getEndSeconds);
+        if (timeGrid != null) {
+            intervals.forEach(task -> timeGrid.occupy(task.getStartSeconds(), task.getEndSeconds()));
+        }
+    }
+
+    protected void removeTaskFromSortedList(Task task) {
+        if (task == null) {
+            return;
+        }
+        if (task.getStartSeconds() != Task.NO_TIME) {
+            sortedTasks.remove(task);
+        }
+        //Берем интервал из дерева: у задачи время могло быть изменено на месте
+        long start = tasksIntervals.getStart(task.getId());
+        long end = tasksIntervals.getEnd(task.getId());
+        tasksIntervals.remove(task.getId());
+        if (timeGrid != null && start != IntervalTree.NO_INTERVAL) {
+            //Слоты могли быть общими с соседними задачами: освобождаем и отмечаем их заново
+            timeGrid.release(start, end);
+            tasksIntervals.findOverlaps(timeGrid.slotStart(start), timeGrid.slotEnd(end), Integer.MIN_VALUE)
+                    .forEach(other -> timeGrid.occupy(other.getStartSeconds(), other.getEndSeconds()));
+        }
+    }
+
+    protected int getAndIncrementId() {
         return taskId++;
     }
 
-    private Map<Integer, Subtask> getSubtasksMap() {
-        return epicsMap.values().stream()
-                .filter(epic -> !epic.isEmpty())
-                .flatMap(epic -> epic.getSubtasks().stream())
-                .collect(Collectors.toMap(Task::getId, subtask -> subtask));
+    //Выделяет count идущих подряд id и возвращает первый из них
+    protected int reserveIds(int count) {
+        int firstId = taskId;
+        taskId += count;
+        return firstId;
+    }
+
+    //Индексы подзадач всех эпиков и статусов эпиков, синхронизируются через EpicListener
+    private class SubtasksIndexListener implements EpicListener {
+
+        @Override
+        public void onSubtaskAdded(Subtask subtask) {
+            subtasksMap.put(subtask.getId(), subtask);
+            indexPut(TasksTypes.SUBTASK, subtask);
+        }
+
+        @Override
+        public void onSubtaskUpdated(Subtask oldSubtask, Subtask newSubtask) {
+            subtasksMap.put(newSubtask.getId(), newSubtask);
+            indexPut(TasksTypes.SUBTASK, newSubtask);
+        }
+
+        @Override
+        public void onSubtaskRemoved(Subtask subtask) {
+            subtasksMap.remove(subtask.getId());
+            indexRemove(TasksTypes.SUBTASK, subtask.getId());
+        }
+
+        @Override
+        public void onEpicStatusChanged(Epic epic) {
+            indexPut(TasksTypes.EPIC, epic);
+        }
+
+        @Override
+        public void onEpicDatesChanged(Epic epic) {
+            if (columnarStore != null) {
+                columnarStore.put(TasksTypes.EPIC, epic);
+            }
+        }
     }
 }
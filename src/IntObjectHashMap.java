@@ -0,0 +1,432 @@
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+//Хеш-таблица с открытой адресацией и линейным пробированием: ключи лежат в int[], значения - в Object[],
+//поэтому на элемент не создаются ни узел, ни Integer. Пустая ячейка - null в values, поэтому
+//значения null не допускаются. Удаление сдвигает следующие элементы цепочки назад, без надгробий.
+//Ключи распределяются как в HashMap, поэтому последовательные id обходятся по возрастанию
+public class IntObjectHashMap<V> extends AbstractMap<Integer, V> implements IntObjectMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    //Таблица увеличивается, когда заполнена на 2/3
+    private int threshold;
+    private int modCount;
+
+    public IntObjectHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntObjectHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Отрицательный размер таблицы");
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    public IntObjectHashMap(Map<Integer, ? extends V> map) {
+        if (map instanceof IntObjectHashMap<? extends V> other) {
+            keys = other.keys.clone();
+            values = other.values.clone();
+            mask = other.mask;
+            size = other.size;
+            threshold = other.threshold;
+            return;
+        }
+        allocate(capacityFor(map.size()));
+        //Вставка идет через закрытый метод: конструктор не вызывает переопределяемый putAll
+        for (Map.Entry<Integer, ? extends V> entry : map.entrySet()) {
+            insert(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int index = indexOf(key);
+        return index >= 0 ? (V) values[index] : null;
+    }
+
+    @Override
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public V put(int key, V value) {
+        return insert(key, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V insert(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Значение не может быть null");
+        }
+        int index = slot(key);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                V oldValue = (V) values[index];
+                values[index] = value;
+                return oldValue;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        modCount++;
+        if (++size > threshold) {
+            resize(keys.length << 1);
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        V oldValue = (V) values[index];
+        removeAt(index);
+        return oldValue;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer id ? get(id.intValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer id && containsKey(id.intValue());
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return put(key.intValue(), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Integer id ? remove(id.intValue()) : null;
+    }
+
+    @Override
+    public V computeIfAbsent(Integer key, Function<? super Integer, ? extends V> mappingFunction) {
+        V value = get(key.intValue());
+        if (value == null) {
+            value = mappingFunction.apply(key);
+            if (value != null) {
+                put(key.intValue(), value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(values, null);
+            size = 0;
+            modCount++;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super Integer, ? super V> action) {
+        int expectedModCount = modCount;
+        for (int index = 0; index < values.length; index++) {
+            if (values[index] != null) {
+                action.accept(keys[index], (V) values[index]);
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    public Set<Integer> keySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new SlotIterator<>() {
+                    @Override
+                    Integer element(int index) {
+                        return keys[index];
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    //Обход значений не создает записей и не упаковывает ключи
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new SlotIterator<>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    V element(int index) {
+                        return (V) values[index];
+                    }
+                };
+            }
+
+            @Override
+            public Spliterator<V> spliterator() {
+                return new ValueSpliterator(values, 0, values.length, modCount);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void forEach(Consumer<? super V> action) {
+                int expectedModCount = modCount;
+                for (Object value : values) {
+                    if (value != null) {
+                        action.accept((V) value);
+                    }
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                return new SlotIterator<>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    Entry<Integer, V> element(int index) {
+                        return new SimpleImmutableEntry<>(keys[index], (V) values[index]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int indexOf(int key) {
+        int index = slot(key);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    //Элементы после удаленного, которые не стоят в своей исходной ячейке, сдвигаются в освободившуюся,
+    //чтобы поиск по цепочке не обрывался на пустой ячейке
+    private void removeAt(int index) {
+        int free = index;
+        values[free] = null;
+        int next = (free + 1) & mask;
+        while (values[next] != null) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                values[next] = null;
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        size--;
+        modCount++;
+    }
+
+    private void resize(int capacity) {
+        if (keys.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Таблица переполнена");
+        }
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int index = 0; index < oldValues.length; index++) {
+            if (oldValues[index] != null) {
+                int newIndex = slot(oldKeys[index]);
+                while (values[newIndex] != null) {
+                    newIndex = (newIndex + 1) & mask;
+                }
+                keys[newIndex] = oldKeys[index];
+                values[newIndex] = oldValues[index];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = capacity == MAX_CAPACITY ? MAX_CAPACITY - 1 : capacity / 3 * 2;
+    }
+
+    private int slot(int key) {
+        return (key ^ (key >>> 16)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long capacity = Math.max(DEFAULT_CAPACITY, (long) expectedSize * 3 / 2 + 1);
+        return (int) Math.min(MAX_CAPACITY, Long.highestOneBit(capacity - 1) << 1);
+    }
+
+    //Обход значений по диапазону ячеек [index, fence): деление пополам не копирует элементы,
+    //поэтому параллельные потоки работают прямо по массиву таблицы
+    private final class ValueSpliterator implements Spliterator<V> {
+        private final Object[] slots;
+        private final int expectedModCount;
+        private int index;
+        private final int fence;
+
+        private ValueSpliterator(Object[] slots, int index, int fence, int expectedModCount) {
+            this.slots = slots;
+            this.index = index;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super V> action) {
+            while (index < fence) {
+                Object value = slots[index++];
+                if (value != null) {
+                    action.accept((V) value);
+                    checkModCount();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super V> action) {
+            for (; index < fence; index++) {
+                if (slots[index] != null) {
+                    action.accept((V) slots[index]);
+                }
+            }
+            checkModCount();
+        }
+
+        @Override
+        public Spliterator<V> trySplit() {
+            int middle = (index + fence) >>> 1;
+            if (middle <= index) {
+                return null;
+            }
+            ValueSpliterator prefix = new ValueSpliterator(slots, index, middle, expectedModCount);
+            index = middle;
+            return prefix;
+        }
+
+        //Оценка по доле ячеек диапазона: заполненность таблицы примерно равномерна
+        @Override
+        public long estimateSize() {
+            return slots.length == 0 ? 0 : (long) size * (fence - index) / slots.length;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.NONNULL;
+        }
+
+        private void checkModCount() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    //Обход ячеек по порядку. Удаление через итератор не поддерживается: сдвиг элементов
+    //при удалении мог бы перенести еще не пройденный элемент в уже пройденную ячейку
+    private abstract class SlotIterator<E> implements Iterator<E> {
+        private final int expectedModCount = modCount;
+        private int nextIndex = advance(0);
+
+        abstract E element(int index);
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < values.length;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (nextIndex >= values.length) {
+                throw new NoSuchElementException();
+            }
+            E element = element(nextIndex);
+            nextIndex = advance(nextIndex + 1);
+            return element;
+        }
+
+        private int advance(int index) {
+            while (index < values.length && values[index] == null) {
+                index++;
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+import java.util.Map;
+
+//Отображение с ключами int: перегрузки с примитивным ключом не упаковывают id в Integer
+public interface IntObjectMap<V> extends Map<Integer, V> {
+
+    V get(int key);
+
+    V put(int key, V value);
+
+    V remove(int key);
+
+    boolean containsKey(int key);
+
+}
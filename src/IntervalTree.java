@@ -0,0 +1,357 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+//АВЛ-дерево интервалов [start, end], упорядоченное по (start, id). Границы - секунды эпохи,
+//поэтому проверки пересечений не создают объектов.
+//В каждом узле хранится максимальное время окончания в поддереве, поэтому
+//поиск пересечений отсекает ветки и работает за O(log N + k).
+//Кроме того, в узле хранится наибольший промежуток между интервалами поддерева:
+//по нему поиск свободного окна пропускает плотно занятые ветки
+public class IntervalTree<T> {
+
+    private static final long NO_GAP = Long.MIN_VALUE;
+    //Значение getStart/getEnd для отсутствующего интервала
+    public static final long NO_INTERVAL = Long.MIN_VALUE;
+
+    private final IntObjectMap<IntervalNode<T>> nodesById;
+    private IntervalNode<T> root;
+
+    public IntervalTree() {
+        nodesById = new IntObjectHashMap<>();
+    }
+
+    public void add(int id, long start, long end, T value) {
+        remove(id);
+        IntervalNode<T> node = new IntervalNode<>(id, start, end, value);
+        root = insert(root, node);
+        nodesById.put(id, node);
+    }
+
+    //Значения должны быть отсортированы по (start, id). В пустое дерево
+    //они загружаются за O(N) построением сбалансированного дерева
+    public void addAll(List<T> sortedValues, ToIntFunction<T> idFunction,
+                       ToLongFunction<T> startFunction, ToLongFunction<T> endFunction) {
+        if (root != null) {
+            sortedValues.forEach(value -> add(idFunction.applyAsInt(value), startFunction.applyAsLong(value),
+                    endFunction.applyAsLong(value), value));
+            return;
+        }
+
+        List<IntervalNode<T>> nodes = new ArrayList<>(sortedValues.size());
+        for (T value : sortedValues) {
+            IntervalNode<T> node = new IntervalNode<>(idFunction.applyAsInt(value), startFunction.applyAsLong(value),
+                    endFunction.applyAsLong(value), value);
+            nodes.add(node);
+            nodesById.put(node.id, node);
+        }
+        root = build(nodes, 0, nodes.size() - 1);
+    }
+
+    public void remove(int id) {
+        IntervalNode<T> node = nodesById.remove(id);
+        if (node != null) {
+            root = delete(root, node.start, node.id);
+        }
+    }
+
+    public long getStart(int id) {
+        IntervalNode<T> node = nodesById.get(id);
+        return node != null ? node.start : NO_INTERVAL;
+    }
+
+    public long getEnd(int id) {
+        IntervalNode<T> node = nodesById.get(id);
+        return node != null ? node.end : NO_INTERVAL;
+    }
+
+    public boolean contains(int id) {
+        return nodesById.containsKey(id);
+    }
+
+    public int size() {
+        return nodesById.size();
+    }
+
+    public void clear() {
+        nodesById.clear();
+        root = null;
+    }
+
+    public boolean hasOverlap(long start, long end, int excludedId) {
+        return findFirstOverlap(root, start, end, excludedId) != null;
+    }
+
+    public List<T> findOverlaps(long start, long end, int excludedId) {
+        List<T> overlaps = new ArrayList<>();
+        collectOverlaps(root, start, end, excludedId, overlaps);
+        return overlaps;
+    }
+
+    //Самое раннее время t >= from, при котором отрезок [t, t + duration] не пересекается ни с одним
+    //интервалом. Границы интервалов считаются занятыми, поэтому окно отступает от них на step
+    public long findFreeSlot(long from, long duration, long step) {
+        GapSearch search = new GapSearch(from, duration, step);
+        if (findFreeSlot(root, search)) {
+            return search.result;
+        }
+        return search.windowStart();
+    }
+
+    //Обходит интервалы по порядку, пропуская поддеревья, которые целиком закончились до from
+    //или в которых нет достаточно большого промежутка. Возвращает true, если окно найдено
+    private boolean findFreeSlot(IntervalNode<T> node, GapSearch search) {
+        if (node == null) {
+            return false;
+        }
+
+        if (node.maxEnd < search.from) {
+            search.skip(node.maxEnd);
+            return false;
+        }
+
+        //Промежуток перед первым интервалом поддерева проверяется отдельно, так как он
+        //зависит от уже пройденных интервалов. Поддерево отбрасывается по maxGap, только если оно
+        //целиком начинается не раньше from: иначе окно может начаться с from меньше чем через step
+        //после конца интервала поддерева и поместиться в промежуток короче requiredGap
+        if (node.minStart >= search.from && !search.fitsBefore(node.minStart)
+                && node.maxGap <= search.requiredGap) {
+            search.skip(node.maxEnd);
+            return false;
+        }
+
+        if (findFreeSlot(node.left, search)) {
+            return true;
+        }
+        if (search.fitsBefore(node.start)) {
+            search.result = search.windowStart();
+            return true;
+        }
+        search.skip(node.end);
+        return findFreeSlot(node.right, search);
+    }
+
+    private IntervalNode<T> findFirstOverlap(IntervalNode<T> node, long start, long end, int excludedId) {
+        if (node == null || node.maxEnd < start) {
+            return null;
+        }
+
+        IntervalNode<T> found = findFirstOverlap(node.left, start, end, excludedId);
+        if (found != null) {
+            return found;
+        }
+
+        //Все интервалы правее начинаются позже окончания искомого
+        if (node.start > end) {
+            return null;
+        }
+
+        if (node.id != excludedId && node.end >= start) {
+            return node;
+        }
+
+        return findFirstOverlap(node.right, start, end, excludedId);
+    }
+
+    private void collectOverlaps(IntervalNode<T> node, long start, long end, int excludedId, List<T> overlaps) {
+        if (node == null || node.maxEnd < start) {
+            return;
+        }
+
+        collectOverlaps(node.left, start, end, excludedId, overlaps);
+
+        if (node.start > end) {
+            return;
+        }
+
+        if (node.id != excludedId && node.end >= start) {
+            overlaps.add(node.value);
+        }
+
+        collectOverlaps(node.right, start, end, excludedId, overlaps);
+    }
+
+    private IntervalNode<T> build(List<IntervalNode<T>> nodes, int from, int to) {
+        if (from > to) {
+            return null;
+        }
+
+        int middle = (from + to) >>> 1;
+        IntervalNode<T> node = nodes.get(middle);
+        node.left = build(nodes, from, middle - 1);
+        node.right = build(nodes, middle + 1, to);
+        update(node);
+        return node;
+    }
+
+    private IntervalNode<T> insert(IntervalNode<T> node, IntervalNode<T> newNode) {
+        if (node == null) {
+            return newNode;
+        }
+
+        if (compare(newNode.start, newNode.id, node) < 0) {
+            node.left = insert(node.left, newNode);
+        } else {
+            node.right = insert(node.right, newNode);
+        }
+        return balance(node);
+    }
+
+    private IntervalNode<T> delete(IntervalNode<T> node, long start, int id) {
+        if (node == null) {
+            return null;
+        }
+
+        int cmp = compare(start, id, node);
+        if (cmp < 0) {
+            node.left = delete(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, start, id);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            IntervalNode<T> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = deleteMin(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return balance(node);
+    }
+
+    private IntervalNode<T> deleteMin(IntervalNode<T> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = deleteMin(node.left);
+        return balance(node);
+    }
+
+    private int compare(long start, int id, IntervalNode<T> node) {
+        int cmp = Long.compare(start, node.start);
+        return cmp != 0 ? cmp : Integer.compare(id, node.id);
+    }
+
+    private IntervalNode<T> balance(IntervalNode<T> node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private IntervalNode<T> rotateRight(IntervalNode<T> node) {
+        IntervalNode<T> newRoot = node.left;
+        node.left = newRoot.right;
+        newRoot.right = node;
+        update(node);
+        update(newRoot);
+        return newRoot;
+    }
+
+    private IntervalNode<T> rotateLeft(IntervalNode<T> node) {
+        IntervalNode<T> newRoot = node.right;
+        node.right = newRoot.left;
+        newRoot.left = node;
+        update(node);
+        update(newRoot);
+        return newRoot;
+    }
+
+    private void update(IntervalNode<T> node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        node.maxEnd = node.end;
+        node.minStart = node.start;
+        node.maxGap = NO_GAP;
+        if (node.left != null) {
+            node.minStart = node.left.minStart;
+            node.maxGap = Math.max(node.left.maxGap, node.start - node.left.maxEnd);
+            node.maxEnd = Math.max(node.maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            node.maxGap = Math.max(node.maxGap, Math.max(node.right.maxGap, node.right.minStart - node.maxEnd));
+            node.maxEnd = Math.max(node.maxEnd, node.right.maxEnd);
+        }
+    }
+
+    private int height(IntervalNode<T> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static class IntervalNode<T> {
+        private final int id;
+        private final long start;
+        private final long end;
+        private final T value;
+        private IntervalNode<T> left;
+        private IntervalNode<T> right;
+        private long maxEnd;
+        private long minStart;
+        //Наибольший промежуток между концом интервала и началом следующего внутри поддерева.
+        //Внутренние промежутки считаются без учета интервалов левее поддерева, поэтому это оценка сверху
+        private long maxGap;
+        private int height;
+
+        private IntervalNode(int id, long start, long end, T value) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.maxEnd = end;
+            this.minStart = start;
+            this.maxGap = NO_GAP;
+            this.height = 1;
+        }
+    }
+
+    //Состояние поиска свободного окна: самый поздний конец уже пройденных интервалов
+    private static class GapSearch {
+        private final long from;
+        private final long duration;
+        private final long step;
+        //Окно [t, t + duration] помещается в промежуток, только если он длиннее requiredGap
+        private final long requiredGap;
+        private long prefixEnd = NO_INTERVAL;
+        private long result;
+
+        private GapSearch(long from, long duration, long step) {
+            this.from = from;
+            this.duration = duration;
+            this.step = step;
+            this.requiredGap = duration + step;
+        }
+
+        //Отступ нужен, только если окно упирается в конец пройденного интервала
+        private long windowStart() {
+            if (prefixEnd < from) {
+                return from;
+            }
+            return prefixEnd + step;
+        }
+
+        private boolean fitsBefore(long nextStart) {
+            return windowStart() + duration < nextStart;
+        }
+
+        private void skip(long end) {
+            prefixEnd = Math.max(prefixEnd, end);
+        }
+    }
+}
@@ -4,8 +4,24 @@ public class Managers {
        return new InMemoryTaskManager();
     }
 
+    public static TaskManager getDefault(int maxHistorySize) {
+        return new InMemoryTaskManager(getDefaultHistory(maxHistorySize));
+    }
+
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager();
+    }
+
+    public static TaskManager getOffHeap() {
+        return new OffHeapTaskManager();
+    }
+
     public static HistoryManager getDefaultHistory() {
         return new InMemoryHistoryManager();
     }
 
+    public static HistoryManager getDefaultHistory(int maxSize) {
+        return new InMemoryHistoryManager(maxSize);
+    }
+
 }
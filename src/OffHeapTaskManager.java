@@ -0,0 +1,1203 @@
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+//Менеджер, хранящий задачи вне кучи в OffHeapTaskStore.
+//Объекты задач создаются только при возврате из API и не связаны с хранилищем:
+//изменения возвращенных задач и эпиков сохраняются только через update-методы.
+//Порядок по времени начала и интервалы для проверки пересечений лежат в блочных индексах примитивов TimeIndex.
+//Сохраненные интервалы не пересекаются, поэтому для проверки достаточно ближайшего интервала,
+//начинающегося не позже окончания проверяемого
+public class OffHeapTaskManager extends AbstractTaskManager {
+
+    //id несохраненной задачи: ни один сохраненный интервал не исключается
+    private static final int NO_ID = 0;
+
+    private final OffHeapTaskStore store;
+    private final TimeIndex startTimes;
+    private final TimeIndex intervals;
+    private final HistoryManager historyManager;
+    private final AccessStatistics accessStatistics;
+    //Количество задач по типу и статусу
+    private final int[][] statusCounts;
+    private int taskId;
+
+    public OffHeapTaskManager() {
+        this(Managers.getDefaultHistory());
+    }
+
+    public OffHeapTaskManager(HistoryManager historyManager) {
+        taskId = 1;
+        this.store = new OffHeapTaskStore();
+        this.startTimes = new TimeIndex();
+        this.intervals = new TimeIndex();
+        this.historyManager = historyManager;
+        this.accessStatistics = new AccessStatistics();
+        this.statusCounts = new int[TasksTypes.values().length][Status.values().length];
+    }
+
+    @Override
+    public void createTask(Task task) {
+        if (task == null) {
+            return;
+        }
+
+        if (overlapsStoredTasks(task.getStartSeconds(), task.getEndSeconds(), id -> false)) {
+            throw new RuntimeException("Задача " + task.getTaskDescription() +
+                    " не была добавлена из-за пересечения во времени с другими задачами");
+        }
+
+        task.setId(taskId++);
+        insert(TasksTypes.TASK, task);
+        addToTimeIndexes(task.getId(), task.getStartSeconds(), task.getEndSeconds());
+    }
+
+    //Эпик сохраняется без подзадач: они добавляются через createSubtask
+    @Override
+    public void createEpic(Epic epic) {
+        if (epic == null) {
+            return;
+        }
+
+        epic.setId(taskId++);
+        insertEpic(epic);
+    }
+
+    @Override
+    public void createSubtask(Subtask subtask) {
+        if (subtask == null) {
+            return;
+        }
+        int epicRecord = store.recordOf(subtask.getEpicId(), TasksTypes.EPIC);
+        if (epicRecord == OffHeapTaskStore.NO_RECORD) {
+            return;
+        }
+
+        if (overlapsStoredTasks(subtask.getStartSeconds(), subtask.getEndSeconds(), id -> false)) {
+            throw new RuntimeException("Задача " + subtask.getTaskDescription() +
+                    " не была добавлена из-за пересечения во времени с другими задачами");
+        }
+
+        subtask.setId(taskId++);
+        insertSubtask(epicRecord, subtask);
+        addToTimeIndexes(subtask.getId(), subtask.getStartSeconds(), subtask.getEndSeconds());
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        return collect(TasksTypes.TASK, null, this::readTask);
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        return collect(TasksTypes.EPIC, null, this::readEpic);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        return collect(TasksTypes.SUBTASK, null, this::readSubtask);
+    }
+
+    //Представления не держат задач: каждая читается из хранилища в момент обхода
+    @Override
+    public Collection<Task> getTasksView() {
+        return view(TasksTypes.TASK, this::readTask);
+    }
+
+    @Override
+    public Collection<Epic> getEpicsView() {
+        return view(TasksTypes.EPIC, this::readEpic);
+    }
+
+    @Override
+    public Collection<Subtask> getSubtasksView() {
+        return view(TasksTypes.SUBTASK, this::readSubtask);
+    }
+
+    @Override
+    public Collection<Subtask> getSubtasksOfEpicView(int epicId) {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Subtask> iterator() {
+                int epicRecord = store.recordOf(epicId, TasksTypes.EPIC);
+                return new Iterator<>() {
+                    private int nextId = epicRecord != OffHeapTaskStore.NO_RECORD
+                            ? store.getInt(epicRecord, OffHeapTaskStore.FIRST_SUBTASK) : NO_ID;
+
+                    @Override
+                    public boolean hasNext() {
+                        return nextId != NO_ID;
+                    }
+
+                    @Override
+                    public Subtask next() {
+                        if (nextId == NO_ID) {
+                            throw new NoSuchElementException();
+                        }
+                        int record = store.recordOf(nextId);
+                        nextId = store.getInt(record, OffHeapTaskStore.NEXT_SUBTASK);
+                        return readSubtask(record);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int epicRecord = store.recordOf(epicId, TasksTypes.EPIC);
+                return epicRecord != OffHeapTaskStore.NO_RECORD
+                        ? store.getInt(epicRecord, OffHeapTaskStore.SUBTASK_COUNT) : 0;
+            }
+        };
+    }
+
+    @Override
+    public void forEachTask(Consumer<? super Task> action) {
+        for (int id = 1; id <= store.getMaxId(); id++) {
+            int record = store.recordOf(id);
+            if (record != OffHeapTaskStore.NO_RECORD) {
+                action.accept(read(record));
+            }
+        }
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        int record = store.recordOf(id, TasksTypes.TASK);
+        return recordView(record != OffHeapTaskStore.NO_RECORD ? readTask(record) : null);
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        int record = store.recordOf(id, TasksTypes.EPIC);
+        return recordView(record != OffHeapTaskStore.NO_RECORD ? readEpic(record) : null);
+    }
+
+    @Override
+    public Subtask getSubtaskById(int id) {
+        int record = store.recordOf(id, TasksTypes.SUBTASK);
+        return recordView(record != OffHeapTaskStore.NO_RECORD ? readSubtask(record) : null);
+    }
+
+    @Override
+    public List<Subtask> getSubtasksOfEpic(int epicId) {
+        int epicRecord = store.recordOf(epicId, TasksTypes.EPIC);
+        if (epicRecord == OffHeapTaskStore.NO_RECORD) {
+            return List.of();
+        }
+        return readSubtasks(epicRecord);
+    }
+
+    @Override
+    public List<Task> getTasksByStatus(TasksTypes type, Status status) {
+        return collect(type, status, this::read);
+    }
+
+    @Override
+    public int getTasksCount(TasksTypes type) {
+        return Arrays.stream(statusCounts[type.ordinal()]).sum();
+    }
+
+    @Override
+    public int getTasksCount(TasksTypes type, Status status) {
+        return statusCounts[type.ordinal()][status.ordinal()];
+    }
+
+    @Override
+    public boolean isTaskExists(int id) {
+        return store.recordOf(id, TasksTypes.TASK) != OffHeapTaskStore.NO_RECORD;
+    }
+
+    @Override
+    public boolean isEpicExists(int id) {
+        return store.recordOf(id, TasksTypes.EPIC) != OffHeapTaskStore.NO_RECORD;
+    }
+
+    @Override
+    public boolean isSubtaskExists(int id) {
+        return store.recordOf(id, TasksTypes.SUBTASK) != OffHeapTaskStore.NO_RECORD;
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        int record = store.recordOf(task.getId(), TasksTypes.TASK);
+        if (record == OffHeapTaskStore.NO_RECORD) {
+            return;
+        }
+
+        if (isTasksOverlapped(task)) {
+            throw new RuntimeException("Задача " + task.getTaskDescription() +
+                    " не была добавлена из-за пересечения во времени с другими задачами");
+        }
+
+        removeFromTimeIndexes(record);
+        replace(record, TasksTypes.TASK, task);
+        addToTimeIndexes(task.getId(), task.getStartSeconds(), task.getEndSeconds());
+    }
+
+    //Статус, время и подзадачи эпика рассчитываются хранилищем, обновляются только название и описание
+    @Override
+    public void updateEpic(Epic epic) {
+        int record = store.recordOf(epic.getId(), TasksTypes.EPIC);
+        if (record != OffHeapTaskStore.NO_RECORD) {
+            store.writeText(record, epic.getTaskName(), epic.getTaskDescription());
+        }
+    }
+
+    @Override
+    public void updateSubtask(Subtask subtask) {
+        int record = store.recordOf(subtask.getId(), TasksTypes.SUBTASK);
+        if (record == OffHeapTaskStore.NO_RECORD
+                || store.getInt(record, OffHeapTaskStore.EPIC_ID) != subtask.getEpicId()) {
+            return;
+        }
+
+        if (isTasksOverlapped(subtask)) {
+            throw new RuntimeException("Задача " + subtask.getTaskDescription() +
+                    " не была добавлена из-за пересечения во времени с другими задачами");
+        }
+
+        removeFromTimeIndexes(record);
+        replaceSubtask(record, subtask);
+        addToTimeIndexes(subtask.getId(), subtask.getStartSeconds(), subtask.getEndSeconds());
+    }
+
+    //Пакетное создание: пакет проверяется целиком до изменений, id выделяются блоком,
+    //индексы времени пополняются одним слиянием. Подзадачи могут ссылаться только на уже существующие эпики
+    @Override
+    public void createAll(List<? extends Task> tasks) {
+        validateBatch(tasks, false);
+
+        List<Task> timedTasks = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            task.setId(taskId++);
+            switch (task) {
+                case Epic epic -> insertEpic(epic);
+                case Subtask subtask -> {
+                    insertSubtask(store.recordOf(subtask.getEpicId(), TasksTypes.EPIC), subtask);
+                    timedTasks.add(subtask);
+                }
+                default -> {
+                    insert(TasksTypes.TASK, task);
+                    timedTasks.add(task);
+                }
+            }
+        }
+        addAllToTimeIndexes(timedTasks);
+    }
+
+    //Пакетное обновление: все задачи должны существовать, подзадачи - оставаться в своих эпиках.
+    //Пересечения проверяются с новым положением задач пакета, а не со старым
+    @Override
+    public void updateAll(List<? extends Task> tasks) {
+        Set<Integer> replacedIds = validateBatch(tasks, true);
+
+        for (int id : replacedIds) {
+            removeFromTimeIndexes(store.recordOf(id));
+        }
+        List<Task> timedTasks = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            int record = store.recordOf(task.getId());
+            switch (task) {
+                case Epic epic -> store.writeText(record, epic.getTaskName(), epic.getTaskDescription());
+                case Subtask subtask -> {
+                    replaceSubtask(record, subtask);
+                    timedTasks.add(subtask);
+                }
+                default -> {
+                    replace(record, TasksTypes.TASK, task);
+                    timedTasks.add(task);
+                }
+            }
+        }
+        addAllToTimeIndexes(timedTasks);
+    }
+
+    //Пакетное удаление задач любого типа, несуществующие id пропускаются
+    @Override
+    public void deleteAll(Collection<Integer> ids) {
+        for (int id : ids) {
+            int record = store.recordOf(id);
+            if (record == OffHeapTaskStore.NO_RECORD) {
+                continue;
+            }
+            switch (store.getType(record)) {
+                case TASK -> remove(record, TasksTypes.TASK);
+                case EPIC -> removeEpic(record);
+                case SUBTASK -> removeSubtask(record);
+            }
+        }
+    }
+
+    @Override
+    public void deleteTaskById(int id) {
+        int record = store.recordOf(id, TasksTypes.TASK);
+        if (record != OffHeapTaskStore.NO_RECORD) {
+            remove(record, TasksTypes.TASK);
+        }
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        int record = store.recordOf(id, TasksTypes.EPIC);
+        if (record != OffHeapTaskStore.NO_RECORD) {
+            removeEpic(record);
+        }
+    }
+
+    @Override
+    public void deleteSubtaskById(int id) {
+        int record = store.recordOf(id, TasksTypes.SUBTASK);
+        if (record != OffHeapTaskStore.NO_RECORD) {
+            removeSubtask(record);
+        }
+    }
+
+    //При очистке индексы времени сжимаются одним проходом, а не по задаче
+    @Override
+    public void clearTasks() {
+        removeTypeFromTimeIndexes(TasksTypes.TASK);
+        forEachRecord(TasksTypes.TASK, record -> remove(record, TasksTypes.TASK));
+    }
+
+    @Override
+    public void clearEpics() {
+        removeTypeFromTimeIndexes(TasksTypes.SUBTASK);
+        forEachRecord(TasksTypes.EPIC, this::removeEpic);
+    }
+
+    @Override
+    public void clearSubtasks() {
+        removeTypeFromTimeIndexes(TasksTypes.SUBTASK);
+        forEachRecord(TasksTypes.EPIC, epicRecord -> {
+            int subtaskId = store.getInt(epicRecord, OffHeapTaskStore.FIRST_SUBTASK);
+            while (subtaskId != NO_ID) {
+                int record = store.recordOf(subtaskId);
+                subtaskId = store.getInt(record, OffHeapTaskStore.NEXT_SUBTASK);
+                remove(record, TasksTypes.SUBTASK);
+            }
+            for (int field : new int[]{OffHeapTaskStore.FIRST_SUBTASK, OffHeapTaskStore.LAST_SUBTASK,
+                    OffHeapTaskStore.SUBTASK_COUNT, OffHeapTaskStore.NEW_COUNT, OffHeapTaskStore.DONE_COUNT}) {
+                store.putInt(epicRecord, field, 0);
+            }
+            updateEpicStatus(epicRecord);
+            store.writeDates(epicRecord, Task.NO_TIME, Task.NO_TIME, Task.NO_TIME);
+        });
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public List<Task> getHotTasks(int k) {
+        List<Task> hotTasks = new ArrayList<>();
+        //Удаленные задачи могут оставаться в статистике, пока их не вытеснят, поэтому они пропускаются
+        for (int id : accessStatistics.getHotIds(Integer.MAX_VALUE)) {
+            if (hotTasks.size() >= k) {
+                break;
+            }
+            int record = store.recordOf(id);
+            if (record != OffHeapTaskStore.NO_RECORD) {
+                hotTasks.add(read(record));
+            }
+        }
+        return hotTasks;
+    }
+
+    @Override
+    public boolean isTasksOverlapped(Task task) {
+        return overlapsStoredTasks(task.getStartSeconds(), task.getEndSeconds(), id -> id == task.getId());
+    }
+
+    @Override
+    public List<Task> getOverlappingTasks(Task task) {
+        long start = task.getStartSeconds();
+        long end = task.getEndSeconds();
+        if (end == Task.NO_TIME) {
+            return List.of();
+        }
+
+        //Окончания непересекающихся интервалов убывают вместе с началами
+        List<Task> overlaps = new ArrayList<>();
+        for (TimeIndex.Cursor cursor = intervals.lastStartingAtOrBefore(end);
+             cursor.isValid() && cursor.end() >= start; cursor.previous()) {
+            if (cursor.id() != task.getId()) {
+                overlaps.add(read(store.recordOf(cursor.id())));
+            }
+        }
+        return overlaps.reversed();
+    }
+
+    //Живое представление по индексу времени начала
+    @Override
+    public Set<Task> getPrioritizedTasks() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Task> iterator() {
+                return new Iterator<>() {
+                    private final TimeIndex.Cursor cursor = startTimes.first();
+
+                    @Override
+                    public boolean hasNext() {
+                        return cursor.isValid();
+                    }
+
+                    @Override
+                    public Task next() {
+                        if (!cursor.isValid()) {
+                            throw new NoSuchElementException();
+                        }
+                        Task task = read(store.recordOf(cursor.id()));
+                        cursor.next();
+                        return task;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return startTimes.size();
+            }
+        };
+    }
+
+    //Задачи, начинающиеся в [from, to)
+    @Override
+    public List<Task> getTasksBetween(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return List.of();
+        }
+        long toSeconds = Task.toEpochSeconds(to);
+        List<Task> tasks = new ArrayList<>();
+        for (TimeIndex.Cursor cursor = startTimes.firstStartingAtOrAfter(Task.toEpochSeconds(from));
+             cursor.isValid() && cursor.start() < toSeconds; cursor.next()) {
+            tasks.add(read(store.recordOf(cursor.id())));
+        }
+        return tasks;
+    }
+
+    @Override
+    public List<Task> getTasksStartingAfter(LocalDateTime time, int limit) {
+        return readStartTimes(startTimes.firstStartingAfter(Task.toEpochSeconds(time)), limit);
+    }
+
+    //Постраничный обход по времени начала: cursor == null - первая страница,
+    //далее передается nextCursor предыдущей страницы
+    @Override
+    public TimelinePage getTimelinePage(LocalDateTime cursor, int limit) {
+        checkPageLimit(limit);
+        TimeIndex.Cursor next = cursor == null ? startTimes.first()
+                : startTimes.firstStartingAfter(Task.toEpochSeconds(cursor));
+        List<Task> tasks = readStartTimes(next, limit);
+        //Курсор - это время начала, поэтому задачи с тем же началом, что и у последней, идут на эту же страницу
+        while (!tasks.isEmpty() && next.isValid() && next.start() == tasks.getLast().getStartSeconds()) {
+            tasks.add(read(store.recordOf(next.id())));
+            next.next();
+        }
+        return new TimelinePage(tasks, !tasks.isEmpty() && next.isValid() ? tasks.getLast().getStartTime() : null);
+    }
+
+    @Override
+    protected long findFreeSeconds(long from, long duration, long step) {
+        return intervals.findFreeSlot(from, duration, step);
+    }
+
+    private void insert(TasksTypes type, Task task) {
+        int record = store.allocate(task.getId(), type);
+        store.write(record, task);
+        statusCounts[type.ordinal()][task.getTaskStatus().ordinal()]++;
+    }
+
+    private void insertEpic(Epic epic) {
+        int record = store.allocate(epic.getId(), TasksTypes.EPIC);
+        store.writeText(record, epic.getTaskName(), epic.getTaskDescription());
+        store.setStatus(record, Status.NEW);
+        statusCounts[TasksTypes.EPIC.ordinal()][Status.NEW.ordinal()]++;
+    }
+
+    //Подзадача добавляется в конец списка эпика, чтобы подзадачи читались в порядке создания
+    private void insertSubtask(int epicRecord, Subtask subtask) {
+        insert(TasksTypes.SUBTASK, subtask);
+        int record = store.recordOf(subtask.getId());
+        int lastId = store.getInt(epicRecord, OffHeapTaskStore.LAST_SUBTASK);
+        store.putInt(record, OffHeapTaskStore.EPIC_ID, subtask.getEpicId());
+        store.putInt(record, OffHeapTaskStore.PREV_SUBTASK, lastId);
+        if (lastId != NO_ID) {
+            store.putInt(store.recordOf(lastId), OffHeapTaskStore.NEXT_SUBTASK, subtask.getId());
+        } else {
+            store.putInt(epicRecord, OffHeapTaskStore.FIRST_SUBTASK, subtask.getId());
+        }
+        store.putInt(epicRecord, OffHeapTaskStore.LAST_SUBTASK, subtask.getId());
+        countInEpic(epicRecord, subtask.getTaskStatus(), 1);
+        updateEpicStatus(epicRecord);
+        updateEpicDates(epicRecord, Task.NO_TIME, Task.NO_TIME, Task.NO_TIME, subtask);
+    }
+
+    private void replace(int record, TasksTypes type, Task task) {
+        statusCounts[type.ordinal()][store.getStatus(record).ordinal()]--;
+        store.write(record, task);
+        statusCounts[type.ordinal()][task.getTaskStatus().ordinal()]++;
+    }
+
+    private void replaceSubtask(int record, Subtask subtask) {
+        int epicRecord = store.recordOf(subtask.getEpicId());
+        long oldStart = store.getStartSeconds(record);
+        long oldEnd = store.getEndSeconds(record);
+        long oldDuration = store.getDurationMinutes(record);
+        countInEpic(epicRecord, store.getStatus(record), -1);
+        replace(record, TasksTypes.SUBTASK, subtask);
+        countInEpic(epicRecord, subtask.getTaskStatus(), 1);
+        updateEpicStatus(epicRecord);
+        updateEpicDates(epicRecord, oldStart, oldEnd, oldDuration, subtask);
+    }
+
+    private void remove(int record, TasksTypes type) {
+        int id = store.getId(record);
+        removeFromTimeIndexes(record);
+        statusCounts[type.ordinal()][store.getStatus(record).ordinal()]--;
+        historyManager.remove(id);
+        store.release(id);
+    }
+
+    private void removeEpic(int epicRecord) {
+        int subtaskId = store.getInt(epicRecord, OffHeapTaskStore.FIRST_SUBTASK);
+        while (subtaskId != NO_ID) {
+            int record = store.recordOf(subtaskId);
+            subtaskId = store.getInt(record, OffHeapTaskStore.NEXT_SUBTASK);
+            remove(record, TasksTypes.SUBTASK);
+        }
+        remove(epicRecord, TasksTypes.EPIC);
+    }
+
+    private void removeSubtask(int record) {
+        int epicRecord = store.recordOf(store.getInt(record, OffHeapTaskStore.EPIC_ID));
+        int prevId = store.getInt(record, OffHeapTaskStore.PREV_SUBTASK);
+        int nextId = store.getInt(record, OffHeapTaskStore.NEXT_SUBTASK);
+        if (prevId != NO_ID) {
+            store.putInt(store.recordOf(prevId), OffHeapTaskStore.NEXT_SUBTASK, nextId);
+        } else {
+            store.putInt(epicRecord, OffHeapTaskStore.FIRST_SUBTASK, nextId);
+        }
+        if (nextId != NO_ID) {
+            store.putInt(store.recordOf(nextId), OffHeapTaskStore.PREV_SUBTASK, prevId);
+        } else {
+            store.putInt(epicRecord, OffHeapTaskStore.LAST_SUBTASK, prevId);
+        }
+        countInEpic(epicRecord, store.getStatus(record), -1);
+        updateEpicStatus(epicRecord);
+        updateEpicDates(epicRecord, store.getStartSeconds(record), store.getEndSeconds(record),
+                store.getDurationMinutes(record), null);
+        remove(record, TasksTypes.SUBTASK);
+    }
+
+    private void countInEpic(int epicRecord, Status status, int delta) {
+        addToField(epicRecord, OffHeapTaskStore.SUBTASK_COUNT, delta);
+        switch (status) {
+            case NEW -> addToField(epicRecord, OffHeapTaskStore.NEW_COUNT, delta);
+            case DONE -> addToField(epicRecord, OffHeapTaskStore.DONE_COUNT, delta);
+        }
+    }
+
+    private void addToField(int record, int field, int delta) {
+        store.putInt(record, field, store.getInt(record, field) + delta);
+    }
+
+    //Статус эпика по счетчикам подзадач, по тем же правилам, что и в Epic
+    private void updateEpicStatus(int epicRecord) {
+        int count = store.getInt(epicRecord, OffHeapTaskStore.SUBTASK_COUNT);
+        Status status;
+        if (store.getInt(epicRecord, OffHeapTaskStore.NEW_COUNT) == count) {
+            status = Status.NEW;
+        } else if (store.getInt(epicRecord, OffHeapTaskStore.DONE_COUNT) == count) {
+            status = Status.DONE;
+        } else {
+            status = Status.IN_PROGRESS;
+        }
+        Status oldStatus = store.getStatus(epicRecord);
+        if (oldStatus != status) {
+            statusCounts[TasksTypes.EPIC.ordinal()][oldStatus.ordinal()]--;
+            statusCounts[TasksTypes.EPIC.ordinal()][status.ordinal()]++;
+            store.setStatus(epicRecord, status);
+        }
+    }
+
+    //Даты эпика лежат в его записи и меняются на вклад одной подзадачи: длительность - на разность,
+    //начало и окончание - сравнением с новыми значениями subtask (null - подзадача удалена).
+    //Подзадачи эпика обходятся, только если ушло значение, на котором держалось начало или окончание
+    private void updateEpicDates(int epicRecord, long oldStart, long oldEnd, long oldDuration, Subtask subtask) {
+        if (store.getInt(epicRecord, OffHeapTaskStore.SUBTASK_COUNT) == 0) {
+            store.writeDates(epicRecord, Task.NO_TIME, Task.NO_TIME, Task.NO_TIME);
+            return;
+        }
+        long newStart = subtask != null ? subtask.getStartSeconds() : Task.NO_TIME;
+        long newEnd = subtask != null ? subtask.getEndSeconds() : Task.NO_TIME;
+        long newDuration = subtask != null ? subtask.getDurationMinutes() : Task.NO_TIME;
+        long start = store.getStartSeconds(epicRecord);
+        long end = store.getEndSeconds(epicRecord);
+        long duration = minutesOf(store.getDurationMinutes(epicRecord)) + minutesOf(newDuration)
+                - minutesOf(oldDuration);
+
+        if (oldStart != Task.NO_TIME && oldStart == start && (newStart == Task.NO_TIME || newStart > oldStart)
+                || oldEnd != Task.NO_TIME && oldEnd == end && newEnd < oldEnd) {
+            start = Task.NO_TIME;
+            end = Task.NO_TIME;
+            for (int id = store.getInt(epicRecord, OffHeapTaskStore.FIRST_SUBTASK); id != NO_ID; ) {
+                int record = store.recordOf(id);
+                start = earliestStart(start, store.getStartSeconds(record));
+                end = Math.max(end, store.getEndSeconds(record));
+                id = store.getInt(record, OffHeapTaskStore.NEXT_SUBTASK);
+            }
+        } else {
+            start = earliestStart(start, newStart);
+            end = Math.max(end, newEnd);
+        }
+        store.writeDates(epicRecord, start, duration, end);
+    }
+
+    //NO_TIME меньше любого времени, поэтому для начала минимум берется только среди заданных
+    private static long earliestStart(long start, long otherStart) {
+        return start == Task.NO_TIME || otherStart != Task.NO_TIME && otherStart < start ? otherStart : start;
+    }
+
+    private static long minutesOf(long durationMinutes) {
+        return durationMinutes == Task.NO_TIME ? 0 : durationMinutes;
+    }
+
+    private void addToTimeIndexes(int id, long start, long end) {
+        if (start != Task.NO_TIME) {
+            startTimes.add(id, start, end);
+        }
+        //Задачи без длительности не участвуют в проверке пересечений
+        if (end != Task.NO_TIME) {
+            intervals.add(id, start, end);
+        }
+    }
+
+    private void addAllToTimeIndexes(List<Task> tasks) {
+        List<Task> timedTasks = new ArrayList<>(tasks.stream()
+                .filter(task -> task.getStartSeconds() != Task.NO_TIME)
+                .toList());
+        timedTasks.sort(Comparator.comparingLong(Task::getStartSeconds).thenComparingInt(Task::getId));
+        startTimes.addAll(timedTasks);
+        intervals.addAll(timedTasks.stream()
+                .filter(task -> task.getEndSeconds() != Task.NO_TIME)
+                .toList());
+    }
+
+    private void removeFromTimeIndexes(int record) {
+        int id = store.getId(record);
+        long start = store.getStartSeconds(record);
+        if (start != Task.NO_TIME) {
+            startTimes.remove(id, start);
+            intervals.remove(id, start);
+        }
+    }
+
+    private void removeTypeFromTimeIndexes(TasksTypes type) {
+        IntPredicate ofType = id -> store.recordOf(id, type) != OffHeapTaskStore.NO_RECORD;
+        startTimes.removeIf(ofType);
+        intervals.removeIf(ofType);
+    }
+
+    private boolean overlapsStoredTasks(long start, long end, IntPredicate excluded) {
+        if (end == Task.NO_TIME) {
+            return false;
+        }
+        for (TimeIndex.Cursor cursor = intervals.lastStartingAtOrBefore(end); cursor.isValid(); cursor.previous()) {
+            if (!excluded.test(cursor.id())) {
+                return cursor.end() >= start;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected boolean overlapsStoredTasks(long start, long end, Set<Integer> excludedIds) {
+        return overlapsStoredTasks(start, end, excludedIds::contains);
+    }
+
+    @Override
+    protected boolean isStoredAs(Task task) {
+        return switch (task) {
+            case Epic epic -> isEpicExists(epic.getId());
+            case Subtask subtask -> isSubtaskExists(subtask.getId()) && store.getInt(
+                    store.recordOf(subtask.getId()), OffHeapTaskStore.EPIC_ID) == subtask.getEpicId();
+            default -> isTaskExists(task.getId());
+        };
+    }
+
+    private <T extends Task> T recordView(T task) {
+        historyManager.add(task);
+        if (task != null) {
+            accessStatistics.record(task.getId());
+        }
+        return task;
+    }
+
+    //Задачи типа по возрастанию id, status == null - все статусы
+    private <T extends Task> List<T> collect(TasksTypes type, Status status, IntFunction<T> reader) {
+        List<T> tasks = new ArrayList<>();
+        forEachRecord(type, record -> {
+            if (status == null || store.getStatus(record) == status) {
+                tasks.add(reader.apply(record));
+            }
+        });
+        return tasks;
+    }
+
+    private <T extends Task> Collection<T> view(TasksTypes type, IntFunction<T> reader) {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new Iterator<>() {
+                    private int nextId = 1;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (nextId <= store.getMaxId()
+                                && store.recordOf(nextId, type) == OffHeapTaskStore.NO_RECORD) {
+                            nextId++;
+                        }
+                        return nextId <= store.getMaxId();
+                    }
+
+                    @Override
+                    public T next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return reader.apply(store.recordOf(nextId++));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return getTasksCount(type);
+            }
+        };
+    }
+
+    private void forEachRecord(TasksTypes type, IntConsumer action) {
+        for (int id = 1; id <= store.getMaxId(); id++) {
+            int record = store.recordOf(id, type);
+            if (record != OffHeapTaskStore.NO_RECORD) {
+                action.accept(record);
+            }
+        }
+    }
+
+    //Читает до limit задач от курсора и оставляет его на первой непрочитанной
+    private List<Task> readStartTimes(TimeIndex.Cursor cursor, int limit) {
+        List<Task> tasks = new ArrayList<>(Math.min(limit, 64));
+        for (; cursor.isValid() && tasks.size() < limit; cursor.next()) {
+            tasks.add(read(store.recordOf(cursor.id())));
+        }
+        return tasks;
+    }
+
+    private Task read(int record) {
+        return switch (store.getType(record)) {
+            case TASK -> readTask(record);
+            case EPIC -> readEpic(record);
+            case SUBTASK -> readSubtask(record);
+        };
+    }
+
+    private Task readTask(int record) {
+        return fill(new Task(store.getName(record), store.getDescription(record)), record);
+    }
+
+    private Subtask readSubtask(int record) {
+        return fill(new Subtask(store.getName(record), store.getDescription(record),
+                store.getInt(record, OffHeapTaskStore.EPIC_ID)), record);
+    }
+
+    //Статус и даты эпика уже рассчитаны в его записи, поэтому подзадачи не читаются:
+    //возвращенный эпик их не содержит, они доступны через getSubtasksOfEpic
+    private Epic readEpic(int record) {
+        Epic epic = new Epic(store.getName(record), store.getDescription(record), store.getStatus(record),
+                store.getStartSeconds(record), store.getDurationMinutes(record), store.getEndSeconds(record));
+        epic.setId(store.getId(record));
+        return epic;
+    }
+
+    private List<Subtask> readSubtasks(int epicRecord) {
+        List<Subtask> subtasks = new ArrayList<>(store.getInt(epicRecord, OffHeapTaskStore.SUBTASK_COUNT));
+        for (int id = store.getInt(epicRecord, OffHeapTaskStore.FIRST_SUBTASK); id != NO_ID; ) {
+            int record = store.recordOf(id);
+            subtasks.add(readSubtask(record));
+            id = store.getInt(record, OffHeapTaskStore.NEXT_SUBTASK);
+        }
+        return subtasks;
+    }
+
+    private <T extends Task> T fill(T task, int record) {
+        task.setId(store.getId(record));
+        task.setTaskStatus(store.getStatus(record));
+        task.storeStartSeconds(store.getStartSeconds(record), store.getStartNanos(record));
+        task.storeDurationMinutes(store.getDurationMinutes(record));
+        return task;
+    }
+
+    //Записи (начало, окончание, id), отсортированные по началу и id, в блоках примитивных массивов
+    //не длиннее CHUNK_SIZE: вставка и удаление сдвигают только свой блок и ссылки на блоки.
+    //Для блока хранятся наибольшее окончание и наибольший промежуток между его записями,
+    //по ним поиск свободного окна пропускает плотно занятые блоки целиком, как ветки IntervalTree
+    private static final class TimeIndex {
+        private static final int CHUNK_SIZE = 256;
+        //Блоки пакетной загрузки заполняются не до конца, чтобы вставки не делили их сразу
+        private static final int FILL_SIZE = CHUNK_SIZE * 3 / 4;
+        private static final long NO_GAP = Long.MIN_VALUE;
+
+        private Chunk[] chunks = new Chunk[4];
+        private int chunkCount;
+        private int size;
+
+        private int size() {
+            return size;
+        }
+
+        private void add(int id, long start, long end) {
+            if (chunkCount == 0) {
+                insertChunk(0, new Chunk());
+            }
+            int chunkIndex = chunkOf(start, id, false);
+            if (chunks[chunkIndex].size == CHUNK_SIZE) {
+                split(chunkIndex);
+                if (chunks[chunkIndex + 1].compareFirst(start, id) <= 0) {
+                    chunkIndex++;
+                }
+            }
+            Chunk chunk = chunks[chunkIndex];
+            chunk.insert(chunk.position(start, id, false), id, start, end);
+            size++;
+        }
+
+        //Пакет отсортирован по (начало, id). Небольшой пакет вставляется по записи,
+        //большой - вливается вместе с индексом в новые блоки за один проход
+        private void addAll(List<Task> sortedTasks) {
+            if ((long) sortedTasks.size() * CHUNK_SIZE < size) {
+                sortedTasks.forEach(task -> add(task.getId(), task.getStartSeconds(), task.getEndSeconds()));
+                return;
+            }
+
+            Chunk[] oldChunks = chunks;
+            int oldCount = chunkCount;
+            chunks = new Chunk[Math.max(4, (size + sortedTasks.size()) / FILL_SIZE + 1)];
+            chunkCount = 0;
+            size = 0;
+            int next = 0;
+            for (int chunkIndex = 0; chunkIndex < oldCount; chunkIndex++) {
+                Chunk chunk = oldChunks[chunkIndex];
+                for (int index = 0; index < chunk.size; index++) {
+                    while (next < sortedTasks.size() && compare(sortedTasks.get(next).getStartSeconds(),
+                            sortedTasks.get(next).getId(), chunk.starts[index], chunk.ids[index]) < 0) {
+                        append(sortedTasks.get(next++));
+                    }
+                    append(chunk.ids[index], chunk.starts[index], chunk.ends[index]);
+                }
+            }
+            for (; next < sortedTasks.size(); next++) {
+                append(sortedTasks.get(next));
+            }
+            for (int chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++) {
+                chunks[chunkIndex].summarize();
+            }
+        }
+
+        private void remove(int id, long start) {
+            if (chunkCount == 0) {
+                return;
+            }
+            int chunkIndex = chunkOf(start, id, false);
+            Chunk chunk = chunks[chunkIndex];
+            int index = chunk.position(start, id, false);
+            if (index == chunk.size || chunk.ids[index] != id || chunk.starts[index] != start) {
+                return;
+            }
+            chunk.delete(index);
+            size--;
+            if (chunk.size == 0) {
+                removeChunk(chunkIndex);
+            } else if (chunkIndex + 1 < chunkCount && chunk.size + chunks[chunkIndex + 1].size <= CHUNK_SIZE / 2) {
+                merge(chunkIndex);
+            } else if (chunkIndex > 0 && chunk.size + chunks[chunkIndex - 1].size <= CHUNK_SIZE / 2) {
+                merge(chunkIndex - 1);
+            }
+        }
+
+        private void removeIf(IntPredicate filter) {
+            int keptChunks = 0;
+            for (int chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++) {
+                Chunk chunk = chunks[chunkIndex];
+                int kept = 0;
+                for (int index = 0; index < chunk.size; index++) {
+                    if (!filter.test(chunk.ids[index])) {
+                        chunk.set(kept++, chunk.ids[index], chunk.starts[index], chunk.ends[index]);
+                    }
+                }
+                size -= chunk.size - kept;
+                chunk.size = kept;
+                if (kept > 0) {
+                    chunk.summarize();
+                    chunks[keptChunks++] = chunk;
+                }
+            }
+            Arrays.fill(chunks, keptChunks, chunkCount, null);
+            chunkCount = keptChunks;
+        }
+
+        private Cursor first() {
+            return new Cursor(0, 0);
+        }
+
+        private Cursor firstStartingAfter(long time) {
+            return find(time, Integer.MAX_VALUE, true);
+        }
+
+        private Cursor firstStartingAtOrAfter(long time) {
+            return find(time, Integer.MIN_VALUE, false);
+        }
+
+        private Cursor lastStartingAtOrBefore(long time) {
+            Cursor cursor = firstStartingAfter(time);
+            cursor.previous();
+            return cursor;
+        }
+
+        //Самое раннее t >= from, при котором [t, t + duration] не пересекается с интервалами индекса;
+        //окно отступает от концов пройденных интервалов на step, как в IntervalTree.findFreeSlot
+        private long findFreeSlot(long from, long duration, long step) {
+            long prefixEnd = Task.NO_TIME;
+            Cursor cursor = lastStartingAtOrBefore(from);
+            if (cursor.isValid()) {
+                prefixEnd = cursor.end();
+                cursor.next();
+            } else {
+                cursor = first();
+            }
+            while (cursor.isValid()) {
+                long windowStart = prefixEnd < from ? from : prefixEnd + step;
+                if (windowStart + duration < cursor.start()) {
+                    return windowStart;
+                }
+                Chunk chunk = chunks[cursor.chunk];
+                if (cursor.index == 0 && chunk.maxGap <= duration + step) {
+                    prefixEnd = Math.max(prefixEnd, chunk.maxEnd);
+                    cursor.nextChunk();
+                } else {
+                    prefixEnd = Math.max(prefixEnd, cursor.end());
+                    cursor.next();
+                }
+            }
+            return prefixEnd < from ? from : prefixEnd + step;
+        }
+
+        //Первая запись больше (start, id), если after, иначе не меньше
+        private Cursor find(long start, int id, boolean after) {
+            if (chunkCount == 0) {
+                return first();
+            }
+            int chunkIndex = chunkOf(start, id, after);
+            Cursor cursor = new Cursor(chunkIndex, chunks[chunkIndex].position(start, id, after));
+            if (cursor.index == chunks[chunkIndex].size) {
+                cursor.nextChunk();
+            }
+            return cursor;
+        }
+
+        //Первый блок, последняя запись которого не раньше искомой позиции, или последний блок
+        private int chunkOf(long start, int id, boolean after) {
+            int low = 0;
+            int high = chunkCount - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int cmp = chunks[middle].compareLast(start, id);
+                if (cmp > 0 || after && cmp == 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private void append(Task task) {
+            append(task.getId(), task.getStartSeconds(), task.getEndSeconds());
+        }
+
+        private void append(int id, long start, long end) {
+            if (chunkCount == 0 || chunks[chunkCount - 1].size == FILL_SIZE) {
+                insertChunk(chunkCount, new Chunk());
+            }
+            Chunk chunk = chunks[chunkCount - 1];
+            chunk.set(chunk.size++, id, start, end);
+            size++;
+        }
+
+        private void split(int chunkIndex) {
+            Chunk chunk = chunks[chunkIndex];
+            Chunk upper = new Chunk();
+            int half = chunk.size / 2;
+            upper.size = chunk.size - half;
+            System.arraycopy(chunk.starts, half, upper.starts, 0, upper.size);
+            System.arraycopy(chunk.ends, half, upper.ends, 0, upper.size);
+            System.arraycopy(chunk.ids, half, upper.ids, 0, upper.size);
+            chunk.size = half;
+            chunk.summarize();
+            upper.summarize();
+            insertChunk(chunkIndex + 1, upper);
+        }
+
+        private void merge(int chunkIndex) {
+            Chunk chunk = chunks[chunkIndex];
+            Chunk next = chunks[chunkIndex + 1];
+            System.arraycopy(next.starts, 0, chunk.starts, chunk.size, next.size);
+            System.arraycopy(next.ends, 0, chunk.ends, chunk.size, next.size);
+            System.arraycopy(next.ids, 0, chunk.ids, chunk.size, next.size);
+            chunk.size += next.size;
+            chunk.summarize();
+            removeChunk(chunkIndex + 1);
+        }
+
+        private void insertChunk(int chunkIndex, Chunk chunk) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length << 1);
+            }
+            System.arraycopy(chunks, chunkIndex, chunks, chunkIndex + 1, chunkCount - chunkIndex);
+            chunks[chunkIndex] = chunk;
+            chunkCount++;
+        }
+
+        private void removeChunk(int chunkIndex) {
+            System.arraycopy(chunks, chunkIndex + 1, chunks, chunkIndex, chunkCount - chunkIndex - 1);
+            chunks[--chunkCount] = null;
+        }
+
+        private static int compare(long start, int id, long otherStart, int otherId) {
+            int cmp = Long.compare(start, otherStart);
+            return cmp != 0 ? cmp : Integer.compare(id, otherId);
+        }
+
+        //Позиция записи в индексе. Живые представления держат курсор между вызовами,
+        //поэтому после изменения индекса он может указывать на другую запись
+        private final class Cursor {
+            private int chunk;
+            private int index;
+
+            private Cursor(int chunk, int index) {
+                this.chunk = chunk;
+                this.index = index;
+            }
+
+            private boolean isValid() {
+                return chunk >= 0 && chunk < chunkCount && index < chunks[chunk].size;
+            }
+
+            private int id() {
+                return chunks[chunk].ids[index];
+            }
+
+            private long start() {
+                return chunks[chunk].starts[index];
+            }
+
+            private long end() {
+                return chunks[chunk].ends[index];
+            }
+
+            private void next() {
+                if (++index == chunks[chunk].size) {
+                    nextChunk();
+                }
+            }
+
+            private void nextChunk() {
+                chunk++;
+                index = 0;
+            }
+
+            private void previous() {
+                if (index > 0) {
+                    index--;
+                } else if (--chunk >= 0) {
+                    index = chunks[chunk].size - 1;
+                }
+            }
+        }
+
+        private static final class Chunk {
+            private final long[] starts = new long[CHUNK_SIZE];
+            private final long[] ends = new long[CHUNK_SIZE];
+            private final int[] ids = new int[CHUNK_SIZE];
+            private int size;
+            private long maxEnd = Task.NO_TIME;
+            //Наибольшая разность между началом записи и наибольшим окончанием предыдущих записей блока
+            private long maxGap = NO_GAP;
+
+            private void insert(int index, int id, long start, long end) {
+                System.arraycopy(starts, index, starts, index + 1, size - index);
+                System.arraycopy(ends, index, ends, index + 1, size - index);
+                System.arraycopy(ids, index, ids, index + 1, size - index);
+                set(index, id, start, end);
+                size++;
+                summarize();
+            }
+
+            private void delete(int index) {
+                System.arraycopy(starts, index + 1, starts, index, size - index - 1);
+                System.arraycopy(ends, index + 1, ends, index, size - index - 1);
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+                summarize();
+            }
+
+            private void set(int index, int id, long start, long end) {
+                ids[index] = id;
+                starts[index] = start;
+                ends[index] = end;
+            }
+
+            //Первая запись больше (start, id), если after, иначе не меньше
+            private int position(long start, int id, boolean after) {
+                int low = 0;
+                int high = size;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    int cmp = compare(starts[middle], ids[middle], start, id);
+                    if (cmp < 0 || after && cmp == 0) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                return low;
+            }
+
+            private int compareFirst(long start, int id) {
+                return compare(starts[0], ids[0], start, id);
+            }
+
+            //Сравнение искомой позиции с последней записью блока
+            private int compareLast(long start, int id) {
+                return compare(start, id, starts[size - 1], ids[size - 1]);
+            }
+
+            private void summarize() {
+                maxEnd = Task.NO_TIME;
+                maxGap = NO_GAP;
+                for (int index = 0; index < size; index++) {
+                    if (maxEnd != Task.NO_TIME) {
+                        maxGap = Math.max(maxGap, starts[index] - maxEnd);
+                    }
+                    maxEnd = Math.max(maxEnd, ends[index]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,302 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+//Хранилище задач вне кучи: записи фиксированной ширины лежат в прямом ByteBuffer,
+//названия и описания - в отдельной арене символов, индекс id -> номер записи - в третьем буфере.
+//В куче нет ни одного объекта на задачу, поэтому работа сборщика мусора не зависит от числа задач.
+//Освобожденные записи связываются в список и используются повторно
+public class OffHeapTaskStore {
+
+    public static final int NO_RECORD = -1;
+
+    //Поля записи: смещения в байтах от начала записи
+    private static final int ID = 0;
+    private static final int TYPE = 4;
+    private static final int STATUS = 5;
+    private static final int USED = 6;
+    private static final int NEXT_FREE = 8;
+    //Ссылки подзадачи: эпик и соседи в списке подзадач эпика
+    public static final int EPIC_ID = 8;
+    public static final int NEXT_SUBTASK = 12;
+    public static final int PREV_SUBTASK = 16;
+    //Поля эпика: концы списка подзадач и счетчики для расчета статуса
+    public static final int FIRST_SUBTASK = 8;
+    public static final int LAST_SUBTASK = 12;
+    public static final int SUBTASK_COUNT = 16;
+    public static final int NEW_COUNT = 20;
+    public static final int DONE_COUNT = 24;
+    private static final int START_NANOS = 28;
+    //Время хранится вместе с окончанием: у эпика оно не выводится из начала и длительности
+    private static final int START = 32;
+    private static final int DURATION = 40;
+    private static final int NAME_OFFSET = 48;
+    private static final int NAME_LENGTH = 52;
+    private static final int DESCRIPTION_OFFSET = 56;
+    private static final int DESCRIPTION_LENGTH = 60;
+    private static final int END = 64;
+    private static final int RECORD_SIZE = 72;
+
+    private static final int INITIAL_RECORDS = 64;
+    private static final int INITIAL_CHARS = INITIAL_RECORDS * 16;
+    private static final int NULL_STRING = -1;
+    private static final TasksTypes[] TYPES = TasksTypes.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private ByteBuffer records;
+    private int recordCount;
+    private int freeHead = NO_RECORD;
+    private int size;
+
+    //Номер записи + 1 по id, 0 - задачи нет. Прямой буфер заполнен нулями при выделении
+    private ByteBuffer index;
+    private int maxId;
+
+    //Символы строк по 2 байта, смещения и длины считаются в символах
+    private ByteBuffer chars;
+    private int charsSize;
+    private int charsGarbage;
+
+    public OffHeapTaskStore() {
+        records = allocate((long) INITIAL_RECORDS * RECORD_SIZE);
+        index = allocate((long) INITIAL_RECORDS * Integer.BYTES);
+        chars = allocate((long) INITIAL_CHARS * Character.BYTES);
+    }
+
+    //Создает пустую запись для нового id
+    public int allocate(int id, TasksTypes type) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("Некорректный id задачи: " + id);
+        }
+        if (recordOf(id) != NO_RECORD) {
+            throw new IllegalArgumentException("Задача " + id + " уже сохранена");
+        }
+        int record = freeHead;
+        if (record != NO_RECORD) {
+            freeHead = records.getInt(offset(record) + NEXT_FREE);
+        } else {
+            if ((long) (recordCount + 1) * RECORD_SIZE > records.capacity()) {
+                records = grow(records, (long) (recordCount + 1) * RECORD_SIZE);
+            }
+            record = recordCount++;
+        }
+        int offset = offset(record);
+        for (int field = 0; field < RECORD_SIZE; field += Long.BYTES) {
+            records.putLong(offset + field, 0);
+        }
+        records.putInt(offset + ID, id);
+        records.put(offset + TYPE, (byte) type.ordinal());
+        records.put(offset + USED, (byte) 1);
+        records.putLong(offset + START, Task.NO_TIME);
+        records.putLong(offset + DURATION, Task.NO_TIME);
+        records.putLong(offset + END, Task.NO_TIME);
+        records.putInt(offset + NAME_LENGTH, NULL_STRING);
+        records.putInt(offset + DESCRIPTION_LENGTH, NULL_STRING);
+        setIndex(id, record + 1);
+        size++;
+        return record;
+    }
+
+    //Записывает статус, время и строки задачи; тип и ссылки записи не меняются
+    public void write(int record, Task task) {
+        int offset = offset(record);
+        records.put(offset + STATUS, (byte) task.getTaskStatus().ordinal());
+        records.putLong(offset + START, task.getStartSeconds());
+        records.putInt(offset + START_NANOS, task.getStartNanos());
+        records.putLong(offset + DURATION, task.getDurationMinutes());
+        records.putLong(offset + END, task.getEndSeconds());
+        writeText(record, task.getTaskName(), task.getTaskDescription());
+    }
+
+    //Даты эпика, рассчитанные по его подзадачам
+    public void writeDates(int record, long startSeconds, long durationMinutes, long endSeconds) {
+        int offset = offset(record);
+        records.putLong(offset + START, startSeconds);
+        records.putInt(offset + START_NANOS, 0);
+        records.putLong(offset + DURATION, durationMinutes);
+        records.putLong(offset + END, endSeconds);
+    }
+
+    public void writeText(int record, String name, String description) {
+        int offset = offset(record);
+        charsGarbage += Math.max(records.getInt(offset + NAME_LENGTH), 0)
+                + Math.max(records.getInt(offset + DESCRIPTION_LENGTH), 0);
+        records.putInt(offset + NAME_OFFSET, charsSize);
+        records.putInt(offset + NAME_LENGTH, appendString(name));
+        records.putInt(offset + DESCRIPTION_OFFSET, charsSize);
+        records.putInt(offset + DESCRIPTION_LENGTH, appendString(description));
+        compactCharsIfNeeded();
+    }
+
+    public void release(int id) {
+        int record = recordOf(id);
+        if (record == NO_RECORD) {
+            return;
+        }
+        int offset = offset(record);
+        charsGarbage += Math.max(records.getInt(offset + NAME_LENGTH), 0)
+                + Math.max(records.getInt(offset + DESCRIPTION_LENGTH), 0);
+        records.put(offset + USED, (byte) 0);
+        records.putInt(offset + NEXT_FREE, freeHead);
+        freeHead = record;
+        setIndex(id, 0);
+        size--;
+        compactCharsIfNeeded();
+    }
+
+    public int recordOf(int id) {
+        if (id <= 0 || id > maxId) {
+            return NO_RECORD;
+        }
+        return index.getInt(id * Integer.BYTES) - 1;
+    }
+
+    //Запись нужного типа или NO_RECORD
+    public int recordOf(int id, TasksTypes type) {
+        int record = recordOf(id);
+        return record != NO_RECORD && getType(record) == type ? record : NO_RECORD;
+    }
+
+    //Наибольший id, когда-либо сохраненный: граница обхода по возрастанию id
+    public int getMaxId() {
+        return maxId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getId(int record) {
+        return records.getInt(offset(record) + ID);
+    }
+
+    public TasksTypes getType(int record) {
+        return TYPES[records.get(offset(record) + TYPE)];
+    }
+
+    public Status getStatus(int record) {
+        return STATUSES[records.get(offset(record) + STATUS)];
+    }
+
+    public void setStatus(int record, Status status) {
+        records.put(offset(record) + STATUS, (byte) status.ordinal());
+    }
+
+    public long getStartSeconds(int record) {
+        return records.getLong(offset(record) + START);
+    }
+
+    public int getStartNanos(int record) {
+        return records.getInt(offset(record) + START_NANOS);
+    }
+
+    public long getDurationMinutes(int record) {
+        return records.getLong(offset(record) + DURATION);
+    }
+
+    public long getEndSeconds(int record) {
+        return records.getLong(offset(record) + END);
+    }
+
+    public String getName(int record) {
+        int offset = offset(record);
+        return readString(records.getInt(offset + NAME_OFFSET), records.getInt(offset + NAME_LENGTH));
+    }
+
+    public String getDescription(int record) {
+        int offset = offset(record);
+        return readString(records.getInt(offset + DESCRIPTION_OFFSET), records.getInt(offset + DESCRIPTION_LENGTH));
+    }
+
+    //Ссылки и счетчики записи, field - одна из констант полей
+    public int getInt(int record, int field) {
+        return records.getInt(offset(record) + field);
+    }
+
+    public void putInt(int record, int field, int value) {
+        records.putInt(offset(record) + field, value);
+    }
+
+    private void setIndex(int id, int value) {
+        if ((long) (id + 1) * Integer.BYTES > index.capacity()) {
+            index = grow(index, (long) (id + 1) * Integer.BYTES);
+        }
+        index.putInt(id * Integer.BYTES, value);
+        maxId = Math.max(maxId, id);
+    }
+
+    private int appendString(String value) {
+        if (value == null) {
+            return NULL_STRING;
+        }
+        long required = ((long) charsSize + value.length()) * Character.BYTES;
+        if (required > chars.capacity()) {
+            chars = grow(chars, required);
+        }
+        int position = charsSize * Character.BYTES;
+        for (int i = 0; i < value.length(); i++) {
+            chars.putChar(position + i * Character.BYTES, value.charAt(i));
+        }
+        charsSize += value.length();
+        return value.length();
+    }
+
+    private String readString(int offset, int length) {
+        if (length == NULL_STRING) {
+            return null;
+        }
+        char[] value = new char[length];
+        int position = offset * Character.BYTES;
+        for (int i = 0; i < length; i++) {
+            value[i] = chars.getChar(position + i * Character.BYTES);
+        }
+        return new String(value);
+    }
+
+    //Арена переписывается без строк удаленных и перезаписанных задач, когда их больше половины
+    private void compactCharsIfNeeded() {
+        if (charsGarbage <= charsSize / 2 || charsSize < INITIAL_CHARS) {
+            return;
+        }
+        ByteBuffer compacted = allocate(Math.max(INITIAL_CHARS, (long) (charsSize - charsGarbage) * 2)
+                * Character.BYTES);
+        int size = 0;
+        for (int record = 0; record < recordCount; record++) {
+            if (records.get(offset(record) + USED) != 0) {
+                size = moveString(compacted, size, record, NAME_OFFSET, NAME_LENGTH);
+                size = moveString(compacted, size, record, DESCRIPTION_OFFSET, DESCRIPTION_LENGTH);
+            }
+        }
+        chars = compacted;
+        charsSize = size;
+        charsGarbage = 0;
+    }
+
+    private int moveString(ByteBuffer target, int size, int record, int offsetField, int lengthField) {
+        int offset = offset(record);
+        int length = records.getInt(offset + lengthField);
+        if (length > 0) {
+            target.put(size * Character.BYTES, chars, records.getInt(offset + offsetField) * Character.BYTES,
+                    length * Character.BYTES);
+        }
+        records.putInt(offset + offsetField, size);
+        return size + Math.max(length, 0);
+    }
+
+    private static int offset(int record) {
+        return record * RECORD_SIZE;
+    }
+
+    //Буфер растет вдвое; старый освобождается сборщиком вместе со своим объектом ByteBuffer
+    private static ByteBuffer grow(ByteBuffer buffer, long required) {
+        if (required > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Хранилище задач переполнено");
+        }
+        ByteBuffer grown = allocate(Math.min(Integer.MAX_VALUE, Math.max(required, (long) buffer.capacity() << 1)));
+        grown.put(0, buffer, 0, buffer.capacity());
+        return grown;
+    }
+
+    private static ByteBuffer allocate(long capacity) {
+        return ByteBuffer.allocateDirect((int) capacity).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+//Параллельная загрузка снимка.
+//Снимок делится на независимые сегменты: отдельные задачи и диапазоны эпиков вместе с их подзадачами.
+//Сегменты разбираются в ForkJoinPool, эпики собираются вместе с подзадачами прямо в рабочих потоках,
+//а затем сегменты по порядку добавляются в менеджер через SnapshotLoader, который проверяет
+//повторяющиеся id и ссылки подзадач на эпики
+public class ParallelSnapshotLoader {
+
+    private static final int SEGMENT_RECORDS = 10_000;
+
+    public static void load(Path file, boolean isBinary, int parallelism, SnapshotLoader loader) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<ParsedSegment>> segments = new ArrayList<>();
+            if (isBinary) {
+                for (ByteBuffer segment : BinaryTaskSnapshot.split(file, SEGMENT_RECORDS)) {
+                    segments.add(pool.submit(() ->
+                            parseSegment(consumer -> BinaryTaskSnapshot.readRecords(segment, consumer))));
+                }
+            } else {
+                //Чтение файла последовательное, сегменты разбираются по мере готовности
+                readCsvSegments(file, records -> segments.add(pool.submit(() -> parseSegment(consumer -> {
+                    CsvTaskCodec codec = new CsvTaskCodec();
+                    records.forEach(record -> consumer.accept(codec.decode(record)));
+                }))));
+            }
+
+            for (Future<ParsedSegment> segment : segments) {
+                segment.get().mergeInto(loader);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerReadException("Загрузка данных прервана");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ManagerReadException readException) {
+                throw readException;
+            }
+            throw new ManagerReadException("Ошибка чтения данных");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void readCsvSegments(Path file, Consumer<List<String>> segmentConsumer) {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            CsvTaskCodec.RecordReader records = new CsvTaskCodec.RecordReader(reader);
+            //Первая строка - это заголовок
+            CharSequence record = records.next();
+            List<String> segment = new ArrayList<>();
+            while ((record = records.next()) != null) {
+                if (segment.size() >= SEGMENT_RECORDS && !CsvTaskCodec.isSubtaskRecord(record)) {
+                    segmentConsumer.accept(segment);
+                    segment = new ArrayList<>();
+                }
+                //Буфер записи переиспользуется читателем, поэтому сегмент хранит копии
+                segment.add(record.toString());
+            }
+            if (!segment.isEmpty()) {
+                segmentConsumer.accept(segment);
+            }
+        } catch (IOException e) {
+            throw new ManagerReadException("Ошибка чтения данных");
+        }
+    }
+
+    private static ParsedSegment parseSegment(Consumer<Consumer<Task>> reader) {
+        ParsedSegment segment = new ParsedSegment();
+        reader.accept(segment::add);
+        return segment;
+    }
+
+    private static class ParsedSegment {
+
+        private final List<Task> items = new ArrayList<>();
+        private Epic currentEpic;
+
+        private void add(Task task) {
+            switch (task) {
+                case Epic epic -> {
+                    currentEpic = epic;
+                    items.add(epic);
+                }
+                case Subtask subtask -> {
+                    //Подзадачи, идущие за своим эпиком, добавляются в него сразу
+                    if (currentEpic != null && currentEpic.getId() == subtask.getEpicId()
+                            && !currentEpic.hasSubtask(subtask.getId())) {
+                        currentEpic.addSubtask(subtask.getId(), subtask);
+                    } else {
+                        items.add(subtask);
+                    }
+                }
+                default -> items.add(task);
+            }
+        }
+
+        private void mergeInto(SnapshotLoader loader) {
+            for (Task item : items) {
+                if (item instanceof Epic epic) {
+                    loader.acceptEpicWithSubtasks(epic);
+                } else {
+                    loader.accept(item);
+                }
+            }
+        }
+    }
+}
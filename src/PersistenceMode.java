@@ -0,0 +1,4 @@
+public enum PersistenceMode {
+    SNAPSHOT,
+    JOURNAL
+}
@@ -0,0 +1,219 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+//История просмотров с журналом событий.
+//Каждый просмотр дописывается в файл строкой "id", удаление из истории - строкой "-id".
+//Когда событий становится заметно больше, чем задач в истории, журнал сжимается
+//до текущего упорядоченного списка. Запись на диск выполняет владелец через flush.
+//Журнал ведется только после enable() или загрузки существующего журнала, до этого история только в памяти
+public class PersistentHistoryManager implements HistoryManager {
+
+    private static final int MIN_COMPACTION_RECORDS = 1000;
+    private static final char REMOVE_PREFIX = '-';
+
+    private final HistoryManager historyManager;
+    private final Path historyFile;
+    //id задач, которые сейчас есть в истории: удаления остальных не пишутся в журнал
+    private Set<Integer> viewedIds;
+    private final StringBuilder pendingEvents;
+    private int pendingCount;
+    private int logRecords;
+    private boolean logging;
+
+    public PersistentHistoryManager(HistoryManager historyManager, Path historyFile) {
+        this.historyManager = historyManager;
+        this.historyFile = historyFile;
+        this.viewedIds = new HashSet<>();
+        this.pendingEvents = new StringBuilder();
+    }
+
+    @Override
+    public void add(Task task) {
+        if (task == null) {
+            return;
+        }
+        historyManager.add(task);
+        logView(task.getId());
+    }
+
+    @Override
+    public void addSnapshot(Task snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        historyManager.addSnapshot(snapshot);
+        logView(snapshot.getId());
+    }
+
+    @Override
+    public void remove(int id) {
+        historyManager.remove(id);
+        if (logging && viewedIds.remove(id)) {
+            pendingEvents.append(REMOVE_PREFIX).append(id).append(System.lineSeparator());
+            pendingCount++;
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public long getEvictedCount() {
+        return historyManager.getEvictedCount();
+    }
+
+    private void logView(int id) {
+        if (!logging) {
+            return;
+        }
+        viewedIds.add(id);
+        pendingEvents.append(id).append(System.lineSeparator());
+        pendingCount++;
+    }
+
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    public boolean isLogging() {
+        return logging;
+    }
+
+    //Включает журнал: он начинается заново с текущего списка просмотров
+    public void enable(boolean fsync) {
+        logging = true;
+        compact(fsync);
+    }
+
+    //Журнал, оставшийся от другого менеджера, ссылается на чужие id и удаляется
+    public void discardStaleLog() {
+        if (logging) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(historyFile);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка удаления журнала истории");
+        }
+    }
+
+    public void flush(boolean fsync) {
+        if (pendingCount == 0) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(historyFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(pendingEvents));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи истории");
+        }
+        logRecords += pendingCount;
+        pendingEvents.setLength(0);
+        pendingCount = 0;
+
+        if (logRecords >= MIN_COMPACTION_RECORDS && logRecords > 2 * viewedIds.size()) {
+            compact(fsync);
+        }
+    }
+
+    //Переписывает журнал текущим списком просмотров от старых к новым
+    public void compact(boolean fsync) {
+        if (!logging) {
+            return;
+        }
+        List<Task> history = historyManager.getHistory();
+        Path tmpFile = historyFile.resolveSibling(historyFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+            for (int i = history.size() - 1; i >= 0; i--) {
+                writer.write(Integer.toString(history.get(i).getId()));
+                writer.write(System.lineSeparator());
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сохранения истории");
+        }
+        try {
+            if (fsync) {
+                try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+            Files.move(tmpFile, historyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка сохранения истории");
+        }
+
+        //Вытесненные из ограниченной истории id больше не нужны
+        viewedIds = new HashSet<>();
+        history.forEach(task -> viewedIds.add(task.getId()));
+        logRecords = history.size();
+        pendingEvents.setLength(0);
+        pendingCount = 0;
+    }
+
+    //Восстанавливает историю за один проход по журналу. Просмотры задач,
+    //которых нет среди загруженных, пропускаются; они не попадают в новый журнал
+    public void load(IntFunction<Task> taskById) {
+        if (!Files.exists(historyFile)) {
+            return;
+        }
+        logging = true;
+
+        Set<Integer> order = new LinkedHashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(historyFile, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                String nextLine = reader.readLine();
+                try {
+                    if (!line.isEmpty() && line.charAt(0) == REMOVE_PREFIX) {
+                        order.remove(Integer.parseInt(line, 1, line.length(), 10));
+                    } else if (!line.isEmpty()) {
+                        int id = Integer.parseInt(line);
+                        //Повторный просмотр переносит задачу в конец
+                        order.remove(id);
+                        order.add(id);
+                    }
+                } catch (NumberFormatException ex) {
+                    //Последняя строка могла быть записана не полностью
+                    if (nextLine != null) {
+                        throw new ManagerReadException("Ошибка чтения истории");
+                    }
+                }
+                logRecords++;
+                line = nextLine;
+            }
+        } catch (IOException e) {
+            throw new ManagerReadException("Ошибка чтения истории");
+        }
+
+        for (int id : order) {
+            Task task = taskById.apply(id);
+            if (task != null) {
+                historyManager.add(task);
+                viewedIds.add(id);
+            }
+        }
+    }
+}
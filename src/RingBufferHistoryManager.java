@@ -0,0 +1,177 @@
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+//История просмотров для многопоточного чтения.
+//Читающие потоки не берут блокировок: снимок задачи публикуется в кольцевой буфер
+//(несколько писателей, один читатель) через CAS на счетчике хвоста. События в связанную
+//историю переносит единственный потребитель - поток, захвативший drainLock.
+//Буфер разбирается, когда заполнен наполовину, а также перед getHistory и remove,
+//поэтому история отстает не больше чем на емкость буфера.
+//Разбор останавливается на ячейке, которую писатель занял, но еще не заполнил, поэтому после remove
+//в буфере могут остаться более ранние просмотры удаленной задачи: remove запоминает позицию хвоста,
+//и просмотры с меньших позиций при разборе отбрасываются
+public class RingBufferHistoryManager implements HistoryManager {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final HistoryManager historyManager;
+    private final int capacity;
+    private final int mask;
+    //Ячейка свободна для записи с позиции pos, если sequence == pos, и готова к чтению, если sequence == pos + 1
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<Task> events;
+    private final AtomicLong tail;
+    private final ReentrantLock drainLock;
+    private volatile long head;
+    //Позиция хвоста в момент удаления по id задачи. Меняется только под drainLock
+    private final IntObjectMap<Long> removedBefore;
+
+    public RingBufferHistoryManager(HistoryManager historyManager) {
+        this(historyManager, DEFAULT_CAPACITY);
+    }
+
+    public RingBufferHistoryManager(HistoryManager historyManager, int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Емкость буфера должна быть степенью двойки");
+        }
+        this.historyManager = historyManager;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.events = new AtomicReferenceArray<>(capacity);
+        this.tail = new AtomicLong();
+        this.drainLock = new ReentrantLock();
+        this.removedBefore = new IntObjectHashMap<>();
+    }
+
+    @Override
+    public void add(Task task) {
+        if (task == null) {
+            return;
+        }
+
+        //Снимок делается в момент просмотра, чтобы отложенное применение не видело поздних изменений.
+        //Потребитель добавляет его в историю через addSnapshot, без второго копирования
+        Task snapshot = InMemoryHistoryManager.copyOf(task);
+        while (!offer(snapshot)) {
+            //Буфер заполнен: ждем, пока потребитель (или этот поток) освободит место
+            drainLock.lock();
+            try {
+                drain();
+            } finally {
+                drainLock.unlock();
+            }
+        }
+
+        if (tail.get() - head >= capacity / 2 && drainLock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        drainLock.lock();
+        try {
+            //Просмотры, опубликованные до удаления, не должны вернуть задачу в историю
+            drain();
+            long position = tail.get();
+            if (position > head) {
+                removedBefore.put(id, Long.valueOf(position));
+            }
+            historyManager.remove(id);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        drainLock.lock();
+        try {
+            drain();
+            return historyManager.getHistory();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    //Просмотры из буфера учитываются до подсчета вытесненных
+    @Override
+    public long getEvictedCount() {
+        drainLock.lock();
+        try {
+            drain();
+            return historyManager.getEvictedCount();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private boolean offer(Task task) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    events.set(index, task);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                //Ячейка еще не прочитана потребителем
+                return false;
+            }
+            //Иначе позицию уже занял другой писатель, пробуем следующую
+        }
+    }
+
+    //Вызывается только под drainLock. Останавливается на первой ячейке, которую писатель
+    //уже занял, но еще не заполнил: она будет разобрана при следующем сбросе
+    private void drain() {
+        while (true) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                //Все позиции до хвоста разобраны, поэтому отметки удалений больше не нужны
+                if (!removedBefore.isEmpty() && head == tail.get()) {
+                    removedBefore.clear();
+                }
+                return;
+            }
+            long position = head;
+            Task task = events.get(index);
+            events.set(index, null);
+            sequences.set(index, position + capacity);
+            head++;
+            if (!isRemovedAfter(task.getId(), position)) {
+                historyManager.addSnapshot(task);
+            }
+        }
+    }
+
+    //Опубликован ли просмотр с позиции position до удаления задачи
+    private boolean isRemovedAfter(int id, long position) {
+        if (removedBefore.isEmpty()) {
+            return false;
+        }
+        Long removedAt = removedBefore.get(id);
+        if (removedAt == null) {
+            return false;
+        }
+        if (position >= removedAt) {
+            removedBefore.remove(id);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,4 @@
+public enum SnapshotFormat {
+    CSV,
+    BINARY
+}
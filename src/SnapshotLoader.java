@@ -0,0 +1,79 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+//Добавляет прочитанные из снимка задачи в менеджер, пропуская повторы
+public class SnapshotLoader implements Consumer<Task> {
+
+    private final InMemoryTaskManager taskManager;
+    //Задачи со временем добавляются в сортированный список одним пакетом после чтения файла
+    private final List<Task> timedTasks = new ArrayList<>();
+    private int maxId;
+
+    public SnapshotLoader(InMemoryTaskManager taskManager) {
+        this.taskManager = taskManager;
+    }
+
+    @Override
+    public void accept(Task task) {
+        switch (task) {
+            case Epic epic -> {
+                if (taskManager.isEpicExists(epic.getId())) {
+                    return;
+                }
+                taskManager.putEpic(epic);
+            }
+            case Subtask subtask -> {
+                //Предположим (согласно логике в save(), что в файле всегда сначала идет эпик,
+                // а потом его подзадачи, по порядку
+                // Более сложные проверки по ТЗ пока не требуются
+                if (taskManager.isSubtaskExists(subtask.getId())
+                        || !taskManager.isEpicExists(subtask.getEpicId())) {
+                    return;
+                }
+                taskManager.epicsMap.get(subtask.getEpicId()).addSubtask(subtask.getId(), subtask);
+            }
+            default -> {
+                if (taskManager.isTaskExists(task.getId())) {
+                    return;
+                }
+                taskManager.putTask(task);
+            }
+        }
+
+        if (!(task instanceof Epic) && task.getStartSeconds() != Task.NO_TIME) {
+            timedTasks.add(task);
+        }
+        maxId = Math.max(maxId, task.getId());
+    }
+
+    //Эпик, собранный вместе с подзадачами при параллельной загрузке
+    public void acceptEpicWithSubtasks(Epic epic) {
+        if (taskManager.isEpicExists(epic.getId())) {
+            epic.getSubtasks().forEach(this::accept);
+            return;
+        }
+
+        epic.getSubtasks().stream()
+                .filter(subtask -> taskManager.isSubtaskExists(subtask.getId()))
+                .toList()
+                .forEach(subtask -> epic.deleteSubtask(subtask.getId()));
+        taskManager.putEpic(epic);
+
+        maxId = Math.max(maxId, epic.getId());
+        for (Subtask subtask : epic.getSubtasks()) {
+            if (subtask.getStartSeconds() != Task.NO_TIME) {
+                timedTasks.add(subtask);
+            }
+            maxId = Math.max(maxId, subtask.getId());
+        }
+    }
+
+    public List<Task> getTimedTasks() {
+        return timedTasks;
+    }
+
+    public int getMaxId() {
+        return maxId;
+    }
+}
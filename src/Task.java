@@ -1,28 +1,48 @@
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Comparator;
 
 public class Task {
 
+    //Значение примитивных полей времени, когда время не задано
+    public static final long NO_TIME = Long.MIN_VALUE;
+    //Порядок по времени начала с точностью до наносекунд; задачи с одинаковым началом различаются по id
+    public static final Comparator<Task> START_TIME_ORDER = Comparator.comparingLong(Task::getStartSeconds)
+            .thenComparingInt(Task::getStartNanos)
+            .thenComparingInt(Task::getId);
+
+    //Одинаковые названия и описания разделяются через пул строк JVM
     protected final String taskName;
     protected final String taskDescription;
     protected int id;
     protected Status taskStatus;
-    protected Duration duration;
-    protected LocalDateTime startTime;
+    //Время хранится только в примитивах: начало в секундах эпохи (UTC) и длительность в минутах,
+    //объекты LocalDateTime и Duration создаются геттерами по запросу
+    private long startSeconds = NO_TIME;
+    //Доли секунды начала хранятся отдельно, чтобы порядок и время не теряли точность
+    private int startNanos;
+    private long durationMinutes = NO_TIME;
 
     public Task(String taskName, String taskDescription) {
-        this.taskName = taskName;
-        this.taskDescription = taskDescription;
+        this.taskName = intern(taskName);
+        this.taskDescription = intern(taskDescription);
         this.taskStatus = Status.NEW;
     }
 
+    //Для копий подклассов: время передается в примитивах, без вызова методов из конструктора подкласса
+    protected Task(String taskName, String taskDescription, long startSeconds, int startNanos,
+                   long durationMinutes) {
+        this(taskName, taskDescription);
+        storeStartSeconds(startSeconds, startNanos);
+        storeDurationMinutes(durationMinutes);
+    }
+
     public Task(Task task) {
-        this.taskName = task.getTaskName();
-        this.taskDescription = task.getTaskDescription();
+        this(task.getTaskName(), task.getTaskDescription(), task.getStartSeconds(), task.getStartNanos(),
+                task.getDurationMinutes());
         this.taskStatus = task.getTaskStatus();
         this.id = task.getId();
-        this.duration = task.getDuration() != null ? Duration.ofMinutes(task.getDuration().toMinutes()) : null;
-        this.startTime = task.getStartTime() != null ? LocalDateTime.from(task.getStartTime()) : null;
     }
 
     public int getId() {
@@ -42,18 +62,36 @@ public class Task {
     }
 
     public Duration getDuration() {
-        return duration;
+        return durationMinutes != NO_TIME ? Duration.ofMinutes(durationMinutes) : null;
     }
 
     public LocalDateTime getStartTime() {
-        return startTime;
+        return startSeconds != NO_TIME ? toDateTime(startSeconds, startNanos) : null;
     }
 
     public LocalDateTime getEndTime() {
-        if (this.startTime == null || this.duration == null) {
-            return null;
+        long endSeconds = getEndSeconds();
+        return endSeconds != NO_TIME ? toDateTime(endSeconds, startNanos) : null;
+    }
+
+    public long getStartSeconds() {
+        return startSeconds;
+    }
+
+    public int getStartNanos() {
+        return startNanos;
+    }
+
+    public long getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    //Окончание без создания объектов, NO_TIME, если нет начала или длительности
+    public long getEndSeconds() {
+        if (startSeconds == NO_TIME || durationMinutes == NO_TIME) {
+            return NO_TIME;
         }
-        return this.startTime.plusMinutes(this.duration.toMinutes());
+        return startSeconds + durationMinutes * 60;
     }
 
     public void setTaskStatus(Status taskStatus) {
@@ -65,11 +103,50 @@ public class Task {
     }
 
     public void setDuration(Duration duration) {
-        this.duration = duration;
+        storeDuration(duration);
     }
 
     public void setStartTime(LocalDateTime startTime) {
-        this.startTime = startTime;
+        storeStartTime(startTime);
+    }
+
+    //Запись времени в обход переопределенных сеттеров (эпик рассчитывает время сам)
+    protected final void storeStartTime(LocalDateTime startTime) {
+        this.startSeconds = startTime != null ? toEpochSeconds(startTime) : NO_TIME;
+        this.startNanos = startTime != null ? startTime.getNano() : 0;
+    }
+
+    protected final void storeDuration(Duration duration) {
+        this.durationMinutes = duration != null ? duration.toMinutes() : NO_TIME;
+    }
+
+    protected final void storeStartSeconds(long startSeconds) {
+        storeStartSeconds(startSeconds, 0);
+    }
+
+    protected final void storeStartSeconds(long startSeconds, int startNanos) {
+        this.startSeconds = startSeconds;
+        this.startNanos = startSeconds != NO_TIME ? startNanos : 0;
+    }
+
+    protected final void storeDurationMinutes(long durationMinutes) {
+        this.durationMinutes = durationMinutes;
+    }
+
+    private static String intern(String value) {
+        return value != null ? value.intern() : null;
+    }
+
+    public static long toEpochSeconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static LocalDateTime toDateTime(long epochSeconds) {
+        return toDateTime(epochSeconds, 0);
+    }
+
+    public static LocalDateTime toDateTime(long epochSeconds, int nanos) {
+        return LocalDateTime.ofEpochSecond(epochSeconds, nanos, ZoneOffset.UTC);
     }
 
     @Override
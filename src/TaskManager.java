@@ -1,5 +1,9 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public interface TaskManager {
 
@@ -15,8 +19,27 @@ public interface TaskManager {
 
     List<Subtask> getSubtasks();
 
+    //Неизменяемые живые представления без копирования: отражают последующие изменения менеджера.
+    //Списочные методы getTasks, getEpics, getSubtasks и getSubtasksOfEpic возвращают снимки
+    Collection<Task> getTasksView();
+
+    Collection<Epic> getEpicsView();
+
+    Collection<Subtask> getSubtasksView();
+
+    Collection<Subtask> getSubtasksOfEpicView(int epicId);
+
+    //Обход задач, эпиков и подзадач без построения списка
+    void forEachTask(Consumer<? super Task> action);
+
     Set<Task> getPrioritizedTasks();
 
+    List<Task> getTasksBetween(LocalDateTime from, LocalDateTime to);
+
+    List<Task> getTasksStartingAfter(LocalDateTime time, int limit);
+
+    TimelinePage getTimelinePage(LocalDateTime cursor, int limit);
+
     Task getTaskById(int id);
 
     Epic getEpicById(int id);
@@ -25,6 +48,12 @@ public interface TaskManager {
 
     List<Subtask> getSubtasksOfEpic(int epicId);
 
+    List<Task> getTasksByStatus(TasksTypes type, Status status);
+
+    int getTasksCount(TasksTypes type);
+
+    int getTasksCount(TasksTypes type, Status status);
+
     boolean isTaskExists(int id);
 
     boolean isEpicExists(int id);
@@ -37,6 +66,12 @@ public interface TaskManager {
 
     void updateSubtask(Subtask subtask);
 
+    void createAll(List<? extends Task> tasks);
+
+    void updateAll(List<? extends Task> tasks);
+
+    void deleteAll(Collection<Integer> ids);
+
     void deleteTaskById(int id);
 
     void deleteEpicById(int id);
@@ -51,6 +86,16 @@ public interface TaskManager {
 
     List<Task> getHistory();
 
+    List<Task> getHotTasks(int k);
+
     boolean isTasksOverlapped(Task task);
 
+    List<Task> getOverlappingTasks(Task task);
+
+    LocalDateTime findFreeSlot(LocalDateTime earliestStart, Duration duration);
+
+    void scheduleTask(Task task, LocalDateTime earliestStart);
+
+    void scheduleTasks(List<? extends Task> tasks, LocalDateTime earliestStart);
+
 }
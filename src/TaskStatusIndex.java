@@ -0,0 +1,71 @@
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+//Вторичный индекс задач по типу и статусу.
+//Для каждого типа хранится текущий статус каждой задачи и корзины id -> задача по статусам,
+//поэтому количество задач типа или статуса получается без обхода всех задач
+public class TaskStatusIndex {
+
+    private final boolean concurrent;
+    private final Map<TasksTypes, IntObjectMap<Status>> statusesById;
+    private final Map<TasksTypes, Map<Status, IntObjectMap<Task>>> tasksByStatus;
+
+    public TaskStatusIndex() {
+        this(false);
+    }
+
+    //concurrent - потокобезопасные корзины для многопоточного менеджера
+    public TaskStatusIndex(boolean concurrent) {
+        this.concurrent = concurrent;
+        statusesById = new EnumMap<>(TasksTypes.class);
+        tasksByStatus = new EnumMap<>(TasksTypes.class);
+        for (TasksTypes type : TasksTypes.values()) {
+            statusesById.put(type, newMap());
+            Map<Status, IntObjectMap<Task>> buckets = new EnumMap<>(Status.class);
+            for (Status status : Status.values()) {
+                buckets.put(status, newMap());
+            }
+            tasksByStatus.put(type, buckets);
+        }
+    }
+
+    //Добавляет задачу или переносит ее в корзину нового статуса
+    public void put(TasksTypes type, Task task) {
+        Status oldStatus = statusesById.get(type).put(task.getId(), task.getTaskStatus());
+        Map<Status, IntObjectMap<Task>> buckets = tasksByStatus.get(type);
+        if (oldStatus != null && oldStatus != task.getTaskStatus()) {
+            buckets.get(oldStatus).remove(task.getId());
+        }
+        buckets.get(task.getTaskStatus()).put(task.getId(), task);
+    }
+
+    public void remove(TasksTypes type, int id) {
+        Status oldStatus = statusesById.get(type).remove(id);
+        if (oldStatus != null) {
+            tasksByStatus.get(type).get(oldStatus).remove(id);
+        }
+    }
+
+    public void clear(TasksTypes type) {
+        statusesById.get(type).clear();
+        tasksByStatus.get(type).values().forEach(Map::clear);
+    }
+
+    public List<Task> getTasks(TasksTypes type, Status status) {
+        return new ArrayList<>(tasksByStatus.get(type).get(status).values());
+    }
+
+    public int count(TasksTypes type) {
+        return statusesById.get(type).size();
+    }
+
+    public int count(TasksTypes type, Status status) {
+        return tasksByStatus.get(type).get(status).size();
+    }
+
+    private <V> IntObjectMap<V> newMap() {
+        return concurrent ? new ConcurrentIntObjectMap<>() : new IntObjectHashMap<>();
+    }
+}
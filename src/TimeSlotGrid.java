@@ -0,0 +1,109 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+//Битовая карта занятых слотов фиксированной длины на горизонте [origin, origin + slots * slotSize).
+//Интервал занимает все слоты, которых касается, включая слот своего окончания, поэтому
+//карта описывает занятость с запасом: свободные биты гарантируют отсутствие пересечений,
+//а занятые нужно подтверждать точной проверкой
+public class TimeSlotGrid {
+
+    //Границы и размер слота в секундах эпохи, как у интервалов задач
+    private final long origin;
+    private final long horizonEnd;
+    private final long slotSeconds;
+    private final int slots;
+    private final long[] words;
+
+    public TimeSlotGrid(LocalDateTime origin, Duration slotSize, Duration horizon) {
+        if (slotSize.toSeconds() <= 0 || horizon.compareTo(slotSize) < 0) {
+            throw new IllegalArgumentException("Некорректный размер слота или горизонта");
+        }
+        this.origin = Task.toEpochSeconds(origin);
+        this.slotSeconds = slotSize.toSeconds();
+        long slotCount = horizon.toSeconds() / slotSeconds;
+        if (slotCount > Integer.MAX_VALUE - 63) {
+            throw new IllegalArgumentException("Слишком много слотов");
+        }
+        this.slots = (int) slotCount;
+        this.horizonEnd = this.origin + slotCount * slotSeconds;
+        this.words = new long[(slots + 63) >>> 6];
+    }
+
+    public long getOrigin() {
+        return origin;
+    }
+
+    public long getHorizonEnd() {
+        return horizonEnd;
+    }
+
+    public boolean contains(long start, long end) {
+        return start >= origin && end < horizonEnd;
+    }
+
+    //Интервал должен целиком лежать на горизонте
+    public boolean isFree(long start, long end) {
+        int first = slot(start);
+        int last = slot(end);
+        int firstWord = first >>> 6;
+        int lastWord = last >>> 6;
+        if (firstWord == lastWord) {
+            return (words[firstWord] & mask(first, last)) == 0;
+        }
+        if ((words[firstWord] & (-1L << first)) != 0 || (words[lastWord] & (-1L >>> (63 - (last & 63)))) != 0) {
+            return false;
+        }
+        for (int word = firstWord + 1; word < lastWord; word++) {
+            if (words[word] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Отмечает часть интервала, попадающую на горизонт
+    public void occupy(long start, long end) {
+        setRange(start, end, true);
+    }
+
+    public void release(long start, long end) {
+        setRange(start, end, false);
+    }
+
+    private void setRange(long start, long end, boolean occupied) {
+        if (end < origin || start >= horizonEnd) {
+            return;
+        }
+        int first = start < origin ? 0 : slot(start);
+        int last = end < horizonEnd ? slot(end) : slots - 1;
+        int firstWord = first >>> 6;
+        int lastWord = last >>> 6;
+        for (int word = firstWord; word <= lastWord; word++) {
+            long wordMask = mask(word == firstWord ? first : word << 6, word == lastWord ? last : (word << 6) + 63);
+            if (occupied) {
+                words[word] |= wordMask;
+            } else {
+                words[word] &= ~wordMask;
+            }
+        }
+    }
+
+    //Границы слота, в который попадает момент time: освобождение очищает слоты целиком,
+    //поэтому заново отмечать нужно все интервалы, касающиеся этих границ
+    public long slotStart(long time) {
+        return origin + Math.floorDiv(time - origin, slotSeconds) * slotSeconds;
+    }
+
+    public long slotEnd(long time) {
+        return slotStart(time) + slotSeconds - 1;
+    }
+
+    //Биты слотов from..to одного слова
+    private static long mask(int from, int to) {
+        return (-1L << from) & (-1L >>> (63 - (to & 63)));
+    }
+
+    private int slot(long time) {
+        return (int) ((time - origin) / slotSeconds);
+    }
+}
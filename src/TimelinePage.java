@@ -0,0 +1,11 @@
+import java.time.LocalDateTime;
+import java.util.List;
+
+//Страница сортированного по времени начала списка задач.
+//nextCursor - время начала последней задачи страницы, null, если страница последняя
+public record TimelinePage(List<Task> tasks, LocalDateTime nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,297 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentTaskManagerTest {
+
+    private static final int THREADS = 8;
+    private static final int EPICS_PER_THREAD = 20;
+    private static final int SUBTASKS_PER_EPIC = 25;
+
+    TaskManager taskManager;
+
+    @BeforeEach
+    void beforeEach() {
+        taskManager = Managers.getConcurrent();
+    }
+
+    @Test
+    void concurrentCreatesAndReads() throws Exception {
+        LocalDateTime start = LocalDateTime.parse("2024-01-01T00:00:00");
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS * 2);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            final int threadNumber = thread;
+            futures.add(executor.submit(() -> {
+                startSignal.await();
+                for (int e = 0; e < EPICS_PER_THREAD; e++) {
+                    Epic epic = new Epic("Эпик " + threadNumber + "." + e, "Тестовый эпик");
+                    taskManager.createEpic(epic);
+                    for (int s = 0; s < SUBTASKS_PER_EPIC; s++) {
+                        Subtask subtask = new Subtask("Подзадача", "Тестовая подзадача", epic.getId());
+                        //У каждого потока свой непересекающийся диапазон времени
+                        long slot = ((long) threadNumber * EPICS_PER_THREAD + e) * SUBTASKS_PER_EPIC + s;
+                        subtask.setStartTime(start.plusMinutes(slot * 10));
+                        subtask.setDuration(Duration.ofMinutes(5));
+                        subtask.setTaskStatus(s % 2 == 0 ? Status.DONE : Status.NEW);
+                        taskManager.createSubtask(subtask);
+                        taskManager.getSubtaskById(subtask.getId());
+                    }
+                    taskManager.getEpicById(epic.getId());
+                }
+                return null;
+            }));
+            //Параллельные читатели
+            futures.add(executor.submit(() -> {
+                startSignal.await();
+                for (int i = 0; i < 200; i++) {
+                    taskManager.getEpics().forEach(epic -> taskManager.getSubtasksOfEpic(epic.getId()));
+                    taskManager.getPrioritizedTasks();
+                    taskManager.getHistory();
+                }
+                return null;
+            }));
+        }
+
+        startSignal.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(THREADS * EPICS_PER_THREAD, taskManager.getEpics().size(), "Не все эпики созданы");
+        assertEquals(THREADS * EPICS_PER_THREAD * SUBTASKS_PER_EPIC, taskManager.getSubtasks().size(),
+                "Не все подзадачи созданы");
+        assertEquals(THREADS * EPICS_PER_THREAD * SUBTASKS_PER_EPIC, taskManager.getPrioritizedTasks().size(),
+                "Не все подзадачи попали в сортированный список");
+
+        Set<Integer> ids = new HashSet<>();
+        taskManager.getEpics().forEach(epic -> assertTrue(ids.add(epic.getId()), "Повторяющийся id"));
+        taskManager.getSubtasks().forEach(subtask -> assertTrue(ids.add(subtask.getId()), "Повторяющийся id"));
+
+        taskManager.getEpics().forEach(epic -> {
+            assertEquals(SUBTASKS_PER_EPIC, epic.getSubtasks().size(), "Некорректный список подзадач эпика");
+            assertEquals(Status.IN_PROGRESS, epic.getTaskStatus(), "Некорректный расчет статуса эпика");
+        });
+    }
+
+    @Test
+    void subtasksOfJustCreatedEpicAreIndexed() throws Exception {
+        int epicsCount = THREADS * EPICS_PER_THREAD;
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        futures.add(executor.submit(() -> {
+            startSignal.await();
+            for (int e = 0; e < epicsCount; e++) {
+                taskManager.createEpic(new Epic("Эпик " + e, "Тестовый эпик"));
+            }
+            return null;
+        }));
+        //Подзадачи добавляются в эпики сразу, как только те становятся видны
+        for (int thread = 0; thread < THREADS; thread++) {
+            futures.add(executor.submit(() -> {
+                startSignal.await();
+                Set<Integer> filled = new HashSet<>();
+                while (filled.size() < epicsCount) {
+                    for (Epic epic : taskManager.getEpics()) {
+                        if (filled.add(epic.getId())) {
+                            Subtask subtask = new Subtask("Подзадача", "Тестовая подзадача", epic.getId());
+                            subtask.setTaskStatus(Status.DONE);
+                            taskManager.createSubtask(subtask);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        startSignal.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(THREADS * epicsCount, taskManager.getSubtasks().size(), "Не все подзадачи созданы");
+        assertEquals(THREADS * epicsCount, taskManager.getTasksCount(TasksTypes.SUBTASK, Status.DONE),
+                "Подзадачи, добавленные до подписки на эпик, не попали в индекс статусов");
+        assertEquals(epicsCount, taskManager.getTasksCount(TasksTypes.EPIC, Status.DONE),
+                "Некорректный расчет статуса эпиков");
+    }
+
+    @Test
+    void onlyOneOfOverlappingTasksIsCreated() throws Exception {
+        LocalDateTime start = LocalDateTime.parse("2024-01-01T10:00:00");
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            futures.add(executor.submit(() -> {
+                startSignal.await();
+                Task task = new Task("Задача", "Тестовая задача");
+                task.setStartTime(start);
+                task.setDuration(Duration.ofHours(1));
+                try {
+                    taskManager.createTask(task);
+                } catch (RuntimeException ex) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        startSignal.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(1, taskManager.getTasks().size(), "Пересекающиеся задачи были добавлены параллельно");
+        assertEquals(THREADS - 1, rejected.get(), "Некорректное количество отклоненных задач");
+    }
+
+    @Test
+    void untimedCreatesDoNotRaceWithClear() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            futures.add(executor.submit(() -> {
+                startSignal.await();
+                for (int i = 0; i < 500; i++) {
+                    taskManager.createTask(new Task("Задача без времени", "Тестовая задача"));
+                }
+                return null;
+            }));
+        }
+        futures.add(executor.submit(() -> {
+            startSignal.await();
+            for (int i = 0; i < 200; i++) {
+                taskManager.clearTasks();
+            }
+            return null;
+        }));
+
+        startSignal.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(taskManager.getTasks().size(), taskManager.getTasksCount(TasksTypes.TASK),
+                "Индекс статусов расходится с задачами после параллельной очистки");
+    }
+
+    @Test
+    void epicByIdIsSnapshot() throws Exception {
+        Epic epic = new Epic("Эпик 1", "Тестовый эпик 1");
+        taskManager.createEpic(epic);
+        taskManager.createSubtask(new Subtask("Подзадача 1", "Тестовая подзадача 1", epic.getId()));
+
+        Epic snapshot = taskManager.getEpicById(epic.getId());
+        assertNotSame(snapshot, taskManager.getEpicById(epic.getId()), "Возвращен живой эпик");
+
+        //Писатели меняют эпик, пока читатель обходит подзадачи снимка
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> writer = executor.submit(() -> {
+            for (int i = 0; i < 2000; i++) {
+                taskManager.createSubtask(new Subtask("Подзадача", "Тестовая подзадача", epic.getId()));
+            }
+        });
+        while (!writer.isDone()) {
+            assertEquals(1, snapshot.getSubtasks().size(), "Снимок эпика изменился вместе с эпиком");
+            taskManager.getEpicById(epic.getId()).getSubtasks().forEach(Task::getId);
+        }
+        writer.get(60, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertEquals(2001, taskManager.getEpicById(epic.getId()).getSubtasks().size(),
+                "Снимок эпика не содержит новых подзадач");
+    }
+
+    @Test
+    void viewsPublishedBeforeRemoveAreDropped() throws Exception {
+        Task removed = new Task("Удаляемая задача", "Тестовая задача");
+        removed.setId(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int round = 0; round < 200; round++) {
+            HistoryManager historyManager = new RingBufferHistoryManager(new InMemoryHistoryManager(), 64);
+            CountDownLatch viewed = new CountDownLatch(THREADS);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                final int threadNumber = thread;
+                futures.add(executor.submit(() -> {
+                    historyManager.add(removed);
+                    viewed.countDown();
+                    //Просмотры других задач занимают ячейки буфера, пока идет удаление
+                    for (int i = 0; i < 100; i++) {
+                        Task other = new Task("Задача", "Тестовая задача");
+                        other.setId(2 + threadNumber * 100 + i);
+                        historyManager.add(other);
+                    }
+                    return null;
+                }));
+            }
+            viewed.await();
+            historyManager.remove(removed.getId());
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+
+            assertFalse(historyManager.getHistory().stream().anyMatch(task -> task.getId() == removed.getId()),
+                    "Просмотр, опубликованный до удаления, вернул задачу в историю");
+            assertEquals(THREADS * 100, historyManager.getHistory().size(), "Просмотры других задач потеряны");
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void concurrentViewsAreRecordedInHistory() throws Exception {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Task task = new Task("Задача " + i, "Тестовая задача");
+            taskManager.createTask(task);
+            tasks.add(task);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            futures.add(executor.submit(() -> {
+                startSignal.await();
+                for (int i = 0; i < 50; i++) {
+                    tasks.forEach(task -> taskManager.getTaskById(task.getId()));
+                }
+                return null;
+            }));
+        }
+
+        startSignal.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        List<Task> history = taskManager.getHistory();
+        assertEquals(tasks.size(), history.size(), "Не все просмотры попали в историю");
+        assertEquals(tasks.size(), new HashSet<>(history).size(), "В истории есть дубликаты");
+
+        taskManager.deleteTaskById(tasks.getFirst().getId());
+        assertFalse(taskManager.getHistory().contains(tasks.getFirst()), "Удаленная задача осталась в истории");
+    }
+}
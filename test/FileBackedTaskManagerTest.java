@@ -4,7 +4,13 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -94,6 +100,445 @@ class FileBackedTaskManagerTest {
                     "Ошибка чтения из файла");
     }
 
+    @Test
+    void journalModeAppendsRecordsAndReplaysThem() throws Exception {
+        var taskManager = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL);
+        generateTestData(taskManager);
+
+        Path journalFile = Path.of(tmpFile.getPath() + FileBackedTaskManager.JOURNAL_FILE_SUFFIX);
+        assertEquals(0, tmpFile.length(), "В режиме журнала снимок не должен перезаписываться");
+        assertEquals(3, Files.readAllLines(journalFile).size(), "Не все изменения записаны в журнал");
+
+        Task task = taskManager.getTasks().getFirst();
+        task.setTaskStatus(Status.DONE);
+        taskManager.updateTask(task);
+        Subtask subtask = taskManager.getSubtasks().getFirst();
+        taskManager.deleteSubtaskById(subtask.getId());
+
+        var taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL);
+        assertEquals(Status.DONE, taskManagerFromFile.getTaskById(task.getId()).getTaskStatus(),
+                "Обновление задачи не восстановлено из журнала");
+        assertTrue(taskManagerFromFile.getSubtasks().isEmpty(), "Удаление подзадачи не восстановлено из журнала");
+        assertEquals(1, taskManagerFromFile.getEpics().size(), "Эпик не восстановлен из журнала");
+
+        taskManager.checkpoint();
+        assertFalse(Files.exists(journalFile), "Журнал не очищен после сохранения снимка");
+
+        taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL);
+        assertEquals(taskManager.getTasks(), taskManagerFromFile.getTasks(), "Списки задач не совпадают");
+        assertEquals(taskManager.getEpics(), taskManagerFromFile.getEpics(), "Списки эпиков не совпадают");
+        Files.deleteIfExists(journalFile);
+    }
+
+    @Test
+    void journalReplayKeepsSubtasksOfUpdatedEpic() throws Exception {
+        var taskManager = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL);
+        Epic epic = new Epic("Эпик 1", "Тестовый эпик 1");
+        taskManager.createEpic(epic);
+        Subtask subtask = new Subtask("Подзадача 1.1", "Тестовая подзадача 1 для эпика 1", epic.getId());
+        subtask.setStartTime(LocalDateTime.parse("2024-07-15T10:00:00"));
+        subtask.setDuration(Duration.ofHours(1));
+        taskManager.createSubtask(subtask);
+        taskManager.updateEpic(epic);
+
+        var taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL);
+        assertEquals(List.of(subtask.getId()),
+                taskManagerFromFile.getSubtasksOfEpic(epic.getId()).stream().map(Task::getId).toList(),
+                "Подзадачи эпика потеряны при повторении журнала");
+        assertEquals(subtask.getStartTime(), taskManagerFromFile.getEpicById(epic.getId()).getStartTime(),
+                "Время эпика не восстановлено из журнала");
+        taskManagerFromFile.deleteEpicById(epic.getId());
+        assertTrue(taskManagerFromFile.getPrioritizedTasks().isEmpty(),
+                "Подзадача удаленного эпика осталась в сортированном списке");
+        Files.deleteIfExists(Path.of(tmpFile.getPath() + FileBackedTaskManager.JOURNAL_FILE_SUFFIX));
+    }
+
+    @Test
+    void journalWithoutSnapshotIsLoaded() throws Exception {
+        Path tasksFile = Path.of(tmpFile.getPath() + ".new");
+        Path journalFile = Path.of(tasksFile + FileBackedTaskManager.JOURNAL_FILE_SUFFIX);
+        var taskManager = new FileBackedTaskManager(tasksFile, PersistenceMode.JOURNAL);
+        generateTestData(taskManager);
+        assertFalse(Files.exists(tasksFile), "Снимок не должен создаваться до сохранения");
+
+        var taskManagerFromFile = FileBackedTaskManager.loadFromFile(tasksFile, PersistenceMode.JOURNAL);
+        assertEquals(taskManager.getTasks(), taskManagerFromFile.getTasks(), "Задачи не восстановлены из журнала");
+        assertEquals(taskManager.getSubtasks(), taskManagerFromFile.getSubtasks(),
+                "Подзадачи не восстановлены из журнала");
+        Files.deleteIfExists(tasksFile);
+        Files.deleteIfExists(journalFile);
+    }
+
+    @Test
+    void tornJournalRecordIsDiscardedOnLoad() throws Exception {
+        Path journalFile = Path.of(tmpFile.getPath() + FileBackedTaskManager.JOURNAL_FILE_SUFFIX);
+        var taskManager = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL);
+        taskManager.createTask(new Task("Задача 1", "Тестовая задача 1"));
+        Files.writeString(journalFile, "PUT,2,TASK,Задача 2", StandardOpenOption.APPEND);
+
+        var taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL);
+        assertEquals(1, taskManagerFromFile.getTasks().size(), "Недописанная запись журнала применена");
+        taskManagerFromFile.createTask(new Task("Задача 2", "Тестовая задача 2"));
+
+        taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL);
+        assertEquals(List.of("Задача 1", "Задача 2"),
+                taskManagerFromFile.getTasks().stream().map(Task::getTaskName).toList(),
+                "Записи после недописанной не восстановлены");
+        Files.deleteIfExists(journalFile);
+    }
+
+    @Test
+    void journalIsFoldedIntoSnapshotByInterval() throws Exception {
+        var taskManager = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL);
+        taskManager.setCheckpointInterval(2);
+        generateTestData(taskManager);
+
+        Path journalFile = Path.of(tmpFile.getPath() + FileBackedTaskManager.JOURNAL_FILE_SUFFIX);
+        assertEquals(1, Files.readAllLines(journalFile).size(), "Журнал не свернут в снимок");
+        assertEquals(3, Files.readAllLines(tmpFile.toPath()).size(), "Снимок не записан при свертке журнала");
+
+        var taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL);
+        assertEquals(taskManager.getSubtasks(), taskManagerFromFile.getSubtasks(), "Списки подзадач не совпадают");
+        Files.deleteIfExists(journalFile);
+    }
+
+    @Test
+    void writeBehindCoalescesMutationsUntilFlush() throws Exception {
+        var taskManager = FileBackedTaskManager.loadFromFile(tmpFile.toPath());
+        taskManager.setWriteBehind(100, Duration.ofHours(1));
+        generateTestData(taskManager);
+        assertEquals(0, tmpFile.length(), "Изменения записаны до сброса");
+
+        taskManager.flush();
+        assertEquals(4, Files.readAllLines(tmpFile.toPath()).size(), "Изменения не записаны при сбросе");
+
+        taskManager.setWriteBehind(2, Duration.ofHours(1));
+        taskManager.createTask(new Task("Задача 2", "Тестовая задача 2"));
+        assertEquals(4, Files.readAllLines(tmpFile.toPath()).size(), "Изменения записаны до заполнения пакета");
+        taskManager.createTask(new Task("Задача 3", "Тестовая задача 3"));
+        assertEquals(6, Files.readAllLines(tmpFile.toPath()).size(), "Пакет изменений не записан");
+    }
+
+    @Test
+    void writeBehindInJournalMode() throws Exception {
+        var taskManager = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL);
+        taskManager.setWriteBehind(100, Duration.ofHours(1));
+        taskManager.setDurability(Durability.NONE);
+        generateTestData(taskManager);
+
+        Path journalFile = Path.of(tmpFile.getPath() + FileBackedTaskManager.JOURNAL_FILE_SUFFIX);
+        taskManager.flush();
+        assertFalse(Files.exists(journalFile), "Изменения записаны при уровне надежности NONE");
+
+        taskManager.sync();
+        assertEquals(3, Files.readAllLines(journalFile).size(), "Изменения не записаны в журнал при sync");
+
+        var taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL);
+        assertEquals(taskManager.getSubtasks(), taskManagerFromFile.getSubtasks(), "Списки подзадач не совпадают");
+        Files.deleteIfExists(journalFile);
+    }
+
+    @Test
+    void writeBehindTailIsFlushedOnClose() throws Exception {
+        Path journalFile = Path.of(tmpFile.getPath() + FileBackedTaskManager.JOURNAL_FILE_SUFFIX);
+        try (var taskManager = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL)) {
+            taskManager.setWriteBehind(100, Duration.ofMillis(1));
+            taskManager.setDurability(Durability.NONE);
+            generateTestData(taskManager);
+            assertFalse(Files.exists(journalFile), "Изменения записаны до закрытия менеджера");
+        }
+        assertEquals(3, Files.readAllLines(journalFile).size(), "Хвост изменений не записан при закрытии");
+        Files.deleteIfExists(journalFile);
+    }
+
+    @Test
+    void pendingRecordsAreBounded() throws Exception {
+        Path journalFile = Path.of(tmpFile.getPath() + FileBackedTaskManager.JOURNAL_FILE_SUFFIX);
+        var taskManager = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.JOURNAL);
+        taskManager.setCheckpointInterval(Integer.MAX_VALUE);
+        taskManager.setWriteBehind(Integer.MAX_VALUE, Duration.ofHours(1));
+        taskManager.setDurability(Durability.NONE);
+        for (int i = 0; i < FileBackedTaskManager.MAX_PENDING_RECORDS + 1; i++) {
+            taskManager.createTask(new Task("Задача " + i, "Тестовая задача " + i));
+        }
+        assertEquals(FileBackedTaskManager.MAX_PENDING_RECORDS, Files.readAllLines(journalFile).size(),
+                "Отложенные записи не сброшены при достижении предела");
+        Files.deleteIfExists(journalFile);
+    }
+
+    @Test
+    void loadedManagerRestoresTimeline() {
+        TaskManager taskManager = new FileBackedTaskManager(tmpFile.toPath());
+        for (int i = 0; i < 10; i++) {
+            Task task = new Task("Задача " + i, "Тестовая задача " + i);
+            task.setStartTime(LocalDateTime.parse("2024-07-15T10:00:00").minusHours(i * 2L));
+            task.setDuration(Duration.ofHours(1));
+            taskManager.createTask(task);
+        }
+
+        var taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath());
+        List<Task> prioritizedTasks = taskManagerFromFile.getPrioritizedTasks().stream().toList();
+        assertEquals(10, prioritizedTasks.size(), "Не все задачи попали в сортированный список");
+        for (int i = 1; i < prioritizedTasks.size(); i++) {
+            assertTrue(prioritizedTasks.get(i - 1).getStartTime().isBefore(prioritizedTasks.get(i).getStartTime()),
+                    "Некорректная сортировка задач по времени начала");
+        }
+
+        Task newTask = new Task("Задача", "Тестовая задача");
+        newTask.setStartTime(LocalDateTime.parse("2024-07-15T10:30:00"));
+        newTask.setDuration(Duration.ofHours(1));
+        assertTrue(taskManagerFromFile.isTasksOverlapped(newTask), "Индекс интервалов не восстановлен при загрузке");
+    }
+
+    @Test
+    void saveAndLoadBinarySnapshot() throws Exception {
+        var taskManager = new FileBackedTaskManager(tmpFile.toPath());
+        taskManager.setSnapshotFormat(SnapshotFormat.BINARY);
+
+        Task task = new Task("Задача, с запятой", "Тестовая задача");
+        task.setStartTime(LocalDateTime.parse("2024-07-15T10:00:00"));
+        task.setDuration(Duration.ofMinutes(90));
+        task.setTaskStatus(Status.IN_PROGRESS);
+        taskManager.createTask(task);
+        Epic epic = new Epic("Эпик 1", "");
+        taskManager.createEpic(epic);
+        Subtask subtask = new Subtask("Подзадача 1.1", "Тестовая подзадача 1 для эпика 1", epic.getId());
+        subtask.setTaskStatus(Status.DONE);
+        subtask.setStartTime(LocalDateTime.parse("2024-07-16T10:00:00"));
+        subtask.setDuration(Duration.ofMinutes(30));
+        taskManager.createSubtask(subtask);
+        taskManager.createTask(new Task("Задача 2", "Тестовая задача 2"));
+
+        assertTrue(BinaryTaskSnapshot.isBinarySnapshot(tmpFile.toPath()), "Снимок записан не в бинарном формате");
+
+        var taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath());
+        Task loadedTask = taskManagerFromFile.getTaskById(task.getId());
+        assertEquals(task.getTaskName(), loadedTask.getTaskName(), "Название задачи не совпадает");
+        assertEquals(task.getTaskStatus(), loadedTask.getTaskStatus(), "Статус задачи не совпадает");
+        assertEquals(task.getStartTime(), loadedTask.getStartTime(), "Время начала задачи не совпадает");
+        assertEquals(task.getDuration(), loadedTask.getDuration(), "Длительность задачи не совпадает");
+
+        Epic loadedEpic = taskManagerFromFile.getEpicById(epic.getId());
+        assertEquals("", loadedEpic.getTaskDescription(), "Описание эпика не совпадает");
+        assertEquals(Status.DONE, loadedEpic.getTaskStatus(), "Статус эпика не восстановлен");
+        assertEquals(subtask.getStartTime(), loadedEpic.getStartTime(), "Время начала эпика не восстановлено");
+        assertEquals(2, taskManagerFromFile.getTasks().size(), "Не все задачи загружены из файла");
+        assertEquals(2, taskManagerFromFile.getPrioritizedTasks().size(), "Не все задачи попали в сортированный список");
+
+        //Менеджер, загруженный из бинарного снимка, продолжает писать в том же формате
+        taskManagerFromFile.deleteTaskById(task.getId());
+        assertTrue(BinaryTaskSnapshot.isBinarySnapshot(tmpFile.toPath()), "Формат снимка изменился после записи");
+        assertEquals(1, FileBackedTaskManager.loadFromFile(tmpFile.toPath()).getTasks().size(),
+                "Удаление задачи не сохранено");
+    }
+
+    @Test
+    void failedBinaryWriteKeepsPreviousSnapshot() {
+        Path file = tmpFile.toPath();
+        BinaryTaskSnapshot.write(file, List.of(new Task("Задача 1", "Тестовая задача 1"),
+                new Task("Задача 2", "Тестовая задача 2")));
+
+        //Запись обрывается на середине: прежний снимок должен остаться целым
+        Iterable<Task> failingTasks = () -> new Iterator<>() {
+            private int count;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Task next() {
+                if (++count > 1) {
+                    throw new IllegalStateException("Сбой во время записи");
+                }
+                return new Task("Задача 3", "Тестовая задача 3");
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> BinaryTaskSnapshot.write(file, failingTasks),
+                "Сбой записи не передан вызывающему");
+
+        List<Task> loaded = new ArrayList<>();
+        BinaryTaskSnapshot.read(file, loaded::add);
+        assertEquals(List.of("Задача 1", "Задача 2"), loaded.stream().map(Task::getTaskName).toList(),
+                "Прерванная запись повредила прежний снимок");
+    }
+
+    @Test
+    void parallelLoadMatchesSequentialLoad() {
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            var taskManager = new FileBackedTaskManager(tmpFile.toPath());
+            taskManager.setSnapshotFormat(format);
+            taskManager.setWriteBehind(Integer.MAX_VALUE, Duration.ofHours(1));
+            generateLargeTestData(taskManager);
+            taskManager.flush();
+
+            var sequentialManager = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.SNAPSHOT);
+            var parallelManager = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), PersistenceMode.SNAPSHOT, 4);
+
+            assertEquals(taskManager.getTasks().size(), parallelManager.getTasks().size(),
+                    "Не все задачи загружены из файла");
+            assertEquals(taskManager.getSubtasks().size(), parallelManager.getSubtasks().size(),
+                    "Не все подзадачи загружены из файла");
+            assertEquals(sequentialManager.getPrioritizedTasks().stream().toList(),
+                    parallelManager.getPrioritizedTasks().stream().toList(),
+                    "Сортированные списки задач не совпадают");
+            for (Epic epic : sequentialManager.getEpics()) {
+                Epic parallelEpic = parallelManager.getEpicById(epic.getId());
+                assertEquals(epic.getSubtasks().size(), parallelEpic.getSubtasks().size(),
+                        "Некорректный список подзадач эпика");
+                assertEquals(epic.getTaskStatus(), parallelEpic.getTaskStatus(), "Некорректный расчет статуса эпика");
+                assertEquals(epic.getStartTime(), parallelEpic.getStartTime(), "Некорректное время начала эпика");
+            }
+
+            Task task = new Task("Задача", "Тестовая задача");
+            parallelManager.createTask(task);
+            assertEquals(sequentialManager.getTasks().size() + sequentialManager.getEpics().size()
+                            + sequentialManager.getSubtasks().size() + 1, task.getId(),
+                    "Счетчик id не восстановлен после загрузки");
+        }
+    }
+
+    @Test
+    void namesAndDescriptionsWithSeparatorsAreEscaped() throws Exception {
+        for (PersistenceMode mode : PersistenceMode.values()) {
+            Files.deleteIfExists(Path.of(tmpFile.getPath() + FileBackedTaskManager.JOURNAL_FILE_SUFFIX));
+            var taskManager = new FileBackedTaskManager(tmpFile.toPath(), mode);
+            Task task = new Task("Купить хлеб, молоко", "Магазин \"У дома\",\nвторой этаж");
+            task.setStartTime(LocalDateTime.of(2024, 8, 1, 9, 5));
+            task.setDuration(Duration.ofMinutes(45));
+            taskManager.createTask(task);
+            Epic epic = new Epic("Эпик, с запятой", "\"\"");
+            taskManager.createEpic(epic);
+            Subtask subtask = new Subtask(",", "", epic.getId());
+            taskManager.createSubtask(subtask);
+
+            var taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), mode);
+            Task loadedTask = taskManagerFromFile.getTaskById(task.getId());
+            assertEquals(task.getTaskName(), loadedTask.getTaskName(), "Название задачи прочитано некорректно");
+            assertEquals(task.getTaskDescription(), loadedTask.getTaskDescription(),
+                    "Описание задачи прочитано некорректно");
+            assertEquals(task.getStartTime(), loadedTask.getStartTime(), "Время начала прочитано некорректно");
+            assertEquals(task.getDuration(), loadedTask.getDuration(), "Длительность прочитана некорректно");
+            Epic loadedEpic = taskManagerFromFile.getEpicById(epic.getId());
+            assertEquals(epic.getTaskName(), loadedEpic.getTaskName(), "Название эпика прочитано некорректно");
+            assertEquals(epic.getTaskDescription(), loadedEpic.getTaskDescription(),
+                    "Описание эпика прочитано некорректно");
+            Subtask loadedSubtask = taskManagerFromFile.getSubtaskById(subtask.getId());
+            assertEquals(",", loadedSubtask.getTaskName(), "Название подзадачи прочитано некорректно");
+            assertEquals("", loadedSubtask.getTaskDescription(), "Описание подзадачи прочитано некорректно");
+            assertEquals(epic.getId(), loadedSubtask.getEpicId(), "Эпик подзадачи прочитан некорректно");
+        }
+        Files.deleteIfExists(Path.of(tmpFile.getPath() + FileBackedTaskManager.JOURNAL_FILE_SUFFIX));
+    }
+
+    @Test
+    void nullNameAndDescriptionAreSaved() throws Exception {
+        for (PersistenceMode mode : PersistenceMode.values()) {
+            Files.deleteIfExists(Path.of(tmpFile.getPath() + FileBackedTaskManager.JOURNAL_FILE_SUFFIX));
+            var taskManager = new FileBackedTaskManager(tmpFile.toPath(), mode);
+            Task task = new Task(null, null);
+            taskManager.createTask(task);
+            taskManager.createTask(new Task("", ""));
+
+            var taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath(), mode);
+            Task loadedTask = taskManagerFromFile.getTaskById(task.getId());
+            assertNull(loadedTask.getTaskName(), "Пустое название задачи прочитано некорректно");
+            assertNull(loadedTask.getTaskDescription(), "Пустое описание задачи прочитано некорректно");
+            assertEquals("", taskManagerFromFile.getTaskById(task.getId() + 1).getTaskDescription(),
+                    "Пустая строка не отличается от отсутствующего описания");
+        }
+        Files.deleteIfExists(Path.of(tmpFile.getPath() + FileBackedTaskManager.JOURNAL_FILE_SUFFIX));
+    }
+
+    @Test
+    void nullNameAndDescriptionAreSavedInBinarySnapshot() {
+        var taskManager = new FileBackedTaskManager(tmpFile.toPath());
+        taskManager.setSnapshotFormat(SnapshotFormat.BINARY);
+        Epic epic = new Epic(null, null);
+        taskManager.createEpic(epic);
+        Subtask subtask = new Subtask("", null, epic.getId());
+        taskManager.createSubtask(subtask);
+
+        var taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath());
+        Epic loadedEpic = taskManagerFromFile.getEpicById(epic.getId());
+        assertNull(loadedEpic.getTaskName(), "Пустое название эпика прочитано некорректно");
+        assertNull(loadedEpic.getTaskDescription(), "Пустое описание эпика прочитано некорректно");
+        Subtask loadedSubtask = taskManagerFromFile.getSubtaskById(subtask.getId());
+        assertEquals("", loadedSubtask.getTaskName(), "Название подзадачи прочитано некорректно");
+        assertNull(loadedSubtask.getTaskDescription(), "Пустое описание подзадачи прочитано некорректно");
+    }
+
+    @Test
+    void historyIsRestoredAfterLoad() throws Exception {
+        Path historyFile = Path.of(tmpFile.getPath() + FileBackedTaskManager.HISTORY_FILE_SUFFIX);
+        var taskManager = FileBackedTaskManager.loadFromFile(tmpFile.toPath());
+        taskManager.enableHistoryPersistence();
+        generateTestData(taskManager);
+        Task task = taskManager.getTasks().getFirst();
+        Epic epic = taskManager.getEpics().getFirst();
+        Subtask subtask = taskManager.getSubtasks().getFirst();
+
+        taskManager.getTaskById(task.getId());
+        taskManager.getSubtaskById(subtask.getId());
+        taskManager.getEpicById(epic.getId());
+        taskManager.getTaskById(task.getId());
+
+        var taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath());
+        assertEquals(List.of(task.getId(), epic.getId(), subtask.getId()),
+                taskManagerFromFile.getHistory().stream().map(Task::getId).toList(),
+                "История восстановлена в неверном порядке");
+
+        taskManager.deleteSubtaskById(subtask.getId());
+        taskManagerFromFile = FileBackedTaskManager.loadFromFile(tmpFile.toPath());
+        assertEquals(List.of(task.getId(), epic.getId()),
+                taskManagerFromFile.getHistory().stream().map(Task::getId).toList(),
+                "Удаленная задача восстановлена в истории");
+
+        taskManager.checkpoint();
+        assertEquals(List.of(String.valueOf(epic.getId()), String.valueOf(task.getId())),
+                Files.readAllLines(historyFile), "Журнал истории не сжат до текущего списка");
+        Files.deleteIfExists(historyFile);
+    }
+
+    @Test
+    void historyIsNotSavedByDefault() throws Exception {
+        Path historyFile = Path.of(tmpFile.getPath() + FileBackedTaskManager.HISTORY_FILE_SUFFIX);
+        var taskManager = FileBackedTaskManager.loadFromFile(tmpFile.toPath());
+        generateTestData(taskManager);
+        taskManager.getTaskById(taskManager.getTasks().getFirst().getId());
+        taskManager.checkpoint();
+        assertFalse(Files.exists(historyFile), "Журнал истории создан без включения");
+
+        //Журнал от прежнего содержимого файла удаляется новым менеджером при первом сохранении
+        Files.writeString(historyFile, "1" + System.lineSeparator());
+        var newTaskManager = new FileBackedTaskManager(tmpFile.toPath());
+        newTaskManager.createTask(new Task("Задача 1", "Тестовая задача 1"));
+        assertFalse(Files.exists(historyFile), "Устаревший журнал истории не удален");
+        assertTrue(FileBackedTaskManager.loadFromFile(tmpFile.toPath()).getHistory().isEmpty(),
+                "История восстановлена из устаревшего журнала");
+        Files.deleteIfExists(historyFile);
+    }
+
+    private void generateLargeTestData(TaskManager taskManager) {
+        LocalDateTime start = LocalDateTime.parse("2024-01-01T00:00:00");
+        for (int i = 0; i < 5000; i++) {
+            taskManager.createTask(new Task("Задача " + i, "Тестовая задача " + i));
+        }
+        for (int e = 0; e < 30; e++) {
+            Epic epic = new Epic("Эпик " + e, "Тестовый эпик " + e);
+            taskManager.createEpic(epic);
+            for (int i = 0; i < 500; i++) {
+                Subtask subtask = new Subtask("Подзадача " + i, "Тестовая подзадача " + i, epic.getId());
+                subtask.setStartTime(start);
+                subtask.setDuration(Duration.ofMinutes(5));
+                subtask.setTaskStatus(e % 2 == 0 ? Status.DONE : Status.IN_PROGRESS);
+                taskManager.createSubtask(subtask);
+                start = start.plusMinutes(10);
+            }
+        }
+    }
+
     private void generateTestData(TaskManager taskManager) {
         Task task1 = new Task(
                 "Задача 1",
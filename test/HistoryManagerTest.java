@@ -84,6 +84,7 @@ public class HistoryManagerTest {
     }
 
     private static Stream<Arguments> provideParameters() {
-        return Stream.of(Arguments.of(Managers.getDefaultHistory()));
+        return Stream.of(Arguments.of(Managers.getDefaultHistory()),
+                Arguments.of(new RingBufferHistoryManager(Managers.getDefaultHistory(), 4)));
     }
 }
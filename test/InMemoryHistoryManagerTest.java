@@ -1,6 +1,7 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Files;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -57,4 +58,62 @@ class InMemoryHistoryManagerTest {
         assertNotEquals(history.get(0).getId(), history.get(1).getId(), "В историю сохраняются ссылки на оригинальные объекты");
     }
 
-}
\ No newline at end of file
+    @Test
+    void isOldestTaskEvictedWhenHistoryIsFull() {
+        InMemoryHistoryManager boundedHistory = new InMemoryHistoryManager(2);
+        for (int id = 1; id <= 4; id++) {
+            Task viewedTask = new Task("Задача " + id, "Тестовая задача " + id);
+            viewedTask.setId(id);
+            boundedHistory.add(viewedTask);
+        }
+
+        List<Task> history = boundedHistory.getHistory();
+        assertEquals(2, history.size(), "Размер истории превышает ограничение");
+        assertEquals(4, history.getFirst().getId(), "Некорректный последний просмотр");
+        assertEquals(3, history.getLast().getId(), "Вытеснен не самый старый просмотр");
+        assertEquals(2, boundedHistory.getEvictedCount(), "Некорректное количество вытесненных просмотров");
+
+        boundedHistory.add(history.getLast());
+        assertEquals(2, boundedHistory.getEvictedCount(), "Повторный просмотр не должен вытеснять задачи");
+        assertEquals(3, boundedHistory.getHistory().getFirst().getId(), "Повторный просмотр не перенесен в конец");
+    }
+
+    @Test
+    void wrappersReportEvictedCount() throws Exception {
+        List<HistoryManager> histories = List.of(
+                new RingBufferHistoryManager(new InMemoryHistoryManager(2), 4),
+                new PersistentHistoryManager(new InMemoryHistoryManager(2), Files.createTempFile("History", ".log")));
+        for (HistoryManager boundedHistory : histories) {
+            for (int id = 1; id <= 5; id++) {
+                Task viewedTask = new Task("Задача " + id, "Тестовая задача " + id);
+                viewedTask.setId(id);
+                boundedHistory.add(viewedTask);
+            }
+            assertEquals(3, boundedHistory.getEvictedCount(), "Обертка истории не передает количество вытесненных");
+        }
+        assertEquals(0, historyManager.getEvictedCount(), "Неограниченная история вытеснила просмотры");
+    }
+
+    @Test
+    void isEpicSnapshotUnaffectedByLaterChanges() {
+        TaskManager taskManager = new InMemoryTaskManager(historyManager);
+        Epic epic = new Epic("Эпик 1", "Тестовый эпик 1");
+        taskManager.createEpic(epic);
+        Subtask subtask = new Subtask("Подзадача 1", "Тестовая подзадача 1", epic.getId());
+        taskManager.createSubtask(subtask);
+
+        taskManager.getEpicById(epic.getId());
+        subtask.setTaskStatus(Status.DONE);
+        taskManager.updateSubtask(subtask);
+        taskManager.createSubtask(new Subtask("Подзадача 2", "Тестовая подзадача 2", epic.getId()));
+
+        Epic epicFromHistory = (Epic) historyManager.getHistory().getFirst();
+        assertEquals(Status.NEW, epicFromHistory.getTaskStatus(), "В историю попало изменение статуса эпика");
+        assertEquals(1, epicFromHistory.getSubtasks().size(), "В историю попала новая подзадача");
+        assertEquals(Status.NEW, epicFromHistory.getSubtasks().getFirst().getTaskStatus(),
+                "В историю попало изменение подзадачи");
+        assertEquals(2, taskManager.getSubtasksOfEpic(epic.getId()).size(), "Эпик изменился вместе со снимком");
+        assertEquals(Status.IN_PROGRESS, epic.getTaskStatus(), "Некорректный расчет статуса эпика");
+    }
+
+}
@@ -3,8 +3,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -259,4 +262,347 @@ class InMemoryTaskManagerTest {
                 "Все подзадачи DONE. Статус эпика: " + epic.getTaskStatus());
     }
 
-}
\ No newline at end of file
+    @Test
+    void isSubtasksIndexSyncedWithEpics() {
+        Epic epic = new Epic(
+                "Эпик 1",
+                "Тестовый эпик 1");
+        taskManager.createEpic(epic);
+        Subtask subtask1 = new Subtask(
+                "Подзадача 1",
+                "Тестовая подзадача 1",
+                epic.getId());
+        taskManager.createSubtask(subtask1);
+
+        Subtask subtask2 = new Subtask(
+                "Подзадача 2",
+                "Тестовая подзадача 2",
+                epic.getId());
+        subtask2.setId(100);
+        epic.addSubtask(subtask2.getId(), subtask2);
+        assertTrue(taskManager.isSubtaskExists(subtask2.getId()), "Подзадача эпика не попала в индекс");
+
+        Subtask subtask1Updated = new Subtask(
+                "Подзадача 1 (обновлена)",
+                "Тестовая подзадача 1",
+                epic.getId());
+        subtask1Updated.setId(subtask1.getId());
+        epic.updateSubtask(subtask1Updated);
+        assertEquals("Подзадача 1 (обновлена)", taskManager.getSubtaskById(subtask1.getId()).getTaskName(),
+                "Индекс подзадач не обновляется");
+
+        epic.deleteSubtask(subtask2.getId());
+        assertFalse(taskManager.isSubtaskExists(subtask2.getId()), "Удаленная подзадача осталась в индексе");
+
+        taskManager.deleteEpicById(epic.getId());
+        assertTrue(taskManager.getSubtasks().isEmpty(), "Подзадачи удаленного эпика остались в индексе");
+    }
+
+    @Test
+    void getOverlappingTasks() {
+        Task task1 = new Task("Задача 1", "Тестовая задача 1");
+        task1.setStartTime(LocalDateTime.parse("2024-07-15T10:00:00"));
+        task1.setDuration(Duration.ofHours(2));
+        taskManager.createTask(task1);
+
+        Task task2 = new Task("Задача 2", "Тестовая задача 2");
+        task2.setStartTime(LocalDateTime.parse("2024-07-15T13:00:00"));
+        task2.setDuration(Duration.ofHours(2));
+        taskManager.createTask(task2);
+
+        Task task3 = new Task("Задача 3", "Тестовая задача 3");
+        task3.setStartTime(LocalDateTime.parse("2024-07-15T16:00:00"));
+        task3.setDuration(Duration.ofHours(1));
+        taskManager.createTask(task3);
+
+        Task newTask = new Task("Задача 4", "Тестовая задача 4");
+        newTask.setStartTime(LocalDateTime.parse("2024-07-15T11:00:00"));
+        newTask.setDuration(Duration.ofHours(3));
+
+        List<Task> overlaps = taskManager.getOverlappingTasks(newTask);
+        assertEquals(List.of(task1, task2), overlaps, "Некорректный список пересекающихся задач");
+        assertThrows(RuntimeException.class, () -> taskManager.createTask(newTask),
+                "Задача с пересечением во времени была добавлена");
+
+        taskManager.deleteTaskById(task1.getId());
+        assertEquals(List.of(task2), taskManager.getOverlappingTasks(newTask),
+                "Удаленная задача осталась в индексе интервалов");
+
+        task3.setStartTime(LocalDateTime.parse("2024-07-15T20:00:00"));
+        taskManager.updateTask(task3);
+        newTask.setStartTime(LocalDateTime.parse("2024-07-15T16:00:00"));
+        newTask.setDuration(Duration.ofHours(1));
+        assertFalse(taskManager.isTasksOverlapped(newTask), "Индекс интервалов не обновляется");
+    }
+
+    @Test
+    void checkEpicDatesAndDurationCalculation() {
+        Epic epic = new Epic(
+                "Эпик",
+                "Тестовый эпик");
+        taskManager.createEpic(epic);
+
+        Subtask subtask1 = new Subtask("Подзадача 1", "Тестовая подзадача 1", epic.getId());
+        subtask1.setStartTime(LocalDateTime.parse("2024-07-15T10:00:00"));
+        subtask1.setDuration(Duration.ofHours(2));
+        taskManager.createSubtask(subtask1);
+
+        Subtask subtask2 = new Subtask("Подзадача 2", "Тестовая подзадача 2", epic.getId());
+        subtask2.setStartTime(LocalDateTime.parse("2024-07-20T10:00:00"));
+        subtask2.setDuration(Duration.ofHours(3));
+        taskManager.createSubtask(subtask2);
+
+        Subtask subtask3 = new Subtask("Подзадача 3", "Тестовая подзадача 3", epic.getId());
+        taskManager.createSubtask(subtask3);
+
+        assertEquals(LocalDateTime.parse("2024-07-15T10:00:00"), epic.getStartTime(), "Некорректное начало эпика");
+        assertEquals(LocalDateTime.parse("2024-07-20T13:00:00"), epic.getEndTime(), "Некорректное окончание эпика");
+        assertEquals(Duration.ofHours(5), epic.getDuration(), "Некорректная длительность эпика");
+
+        subtask2.setStartTime(LocalDateTime.parse("2024-07-10T10:00:00"));
+        subtask2.setDuration(Duration.ofHours(1));
+        taskManager.updateSubtask(subtask2);
+        assertEquals(LocalDateTime.parse("2024-07-10T10:00:00"), epic.getStartTime(), "Некорректное начало эпика");
+        assertEquals(LocalDateTime.parse("2024-07-15T12:00:00"), epic.getEndTime(), "Некорректное окончание эпика");
+        assertEquals(Duration.ofHours(3), epic.getDuration(), "Некорректная длительность эпика");
+
+        taskManager.deleteSubtaskById(subtask2.getId());
+        assertEquals(LocalDateTime.parse("2024-07-15T10:00:00"), epic.getStartTime(), "Некорректное начало эпика");
+        assertEquals(Duration.ofHours(2), epic.getDuration(), "Некорректная длительность эпика");
+
+        taskManager.deleteSubtaskById(subtask1.getId());
+        assertNull(epic.getStartTime(), "Начало эпика без дат подзадач должно быть пустым");
+        assertNull(epic.getEndTime(), "Окончание эпика без дат подзадач должно быть пустым");
+        assertEquals(Status.NEW, epic.getTaskStatus(), "Некорректный расчет статуса эпика");
+    }
+
+    @Test
+    void getHotTasks() {
+        for (int i = 0; i < 200; i++) {
+            taskManager.createTask(new Task("Задача " + i, "Тестовая задача"));
+        }
+        List<Task> tasks = taskManager.getTasks();
+        //Каждая задача просмотрена один раз, задачи 10, 20 и 30 - 50, 40 и 30 раз
+        tasks.forEach(task -> taskManager.getTaskById(task.getId()));
+        for (int i = 0; i < 50; i++) {
+            taskManager.getTaskById(10);
+            if (i < 40) {
+                taskManager.getTaskById(20);
+            }
+            if (i < 30) {
+                taskManager.getTaskById(30);
+            }
+        }
+
+        assertEquals(List.of(10, 20, 30), taskManager.getHotTasks(3).stream().map(Task::getId).toList(),
+                "Некорректный список самых просматриваемых задач");
+
+        taskManager.deleteTaskById(10);
+        assertEquals(List.of(20, 30), taskManager.getHotTasks(2).stream().map(Task::getId).toList(),
+                "Удаленная задача попала в список самых просматриваемых");
+        assertTrue(taskManager.getHotTasks(0).isEmpty(), "Список должен быть пустым");
+    }
+
+    @Test
+    void accessStatisticsDecay() {
+        AccessStatistics statistics = new AccessStatistics(64, 4, 4, 1000);
+        for (int i = 0; i < 100; i++) {
+            statistics.record(1);
+        }
+        assertTrue(statistics.estimate(1) >= 100, "Оценка частоты не может быть меньше точного значения");
+
+        statistics.decay();
+        assertEquals(50, statistics.estimate(1), "Счетчики не уменьшены вдвое");
+        for (int i = 0; i < 60; i++) {
+            statistics.record(2);
+        }
+        assertEquals(List.of(2, 1), statistics.getHotIds(2), "Старые обращения не потеряли вес");
+    }
+
+    @Test
+    void statusAndTypeIndexes() {
+        Task task = new Task("Задача 1", "Тестовая задача 1");
+        taskManager.createTask(task);
+        Epic epic = new Epic("Эпик 1", "Тестовый эпик 1");
+        taskManager.createEpic(epic);
+        Subtask subtask1 = new Subtask("Подзадача 1", "Тестовая подзадача 1", epic.getId());
+        taskManager.createSubtask(subtask1);
+        Subtask subtask2 = new Subtask("Подзадача 2", "Тестовая подзадача 2", epic.getId());
+        subtask2.setTaskStatus(Status.DONE);
+        taskManager.createSubtask(subtask2);
+
+        assertEquals(1, taskManager.getTasksCount(TasksTypes.TASK), "Некорректное количество задач");
+        assertEquals(2, taskManager.getTasksCount(TasksTypes.SUBTASK), "Некорректное количество подзадач");
+        assertEquals(1, taskManager.getTasksCount(TasksTypes.SUBTASK, Status.DONE),
+                "Некорректное количество выполненных подзадач");
+        assertEquals(1, taskManager.getTasksCount(TasksTypes.EPIC, Status.IN_PROGRESS),
+                "Статус эпика не попал в индекс");
+
+        task.setTaskStatus(Status.DONE);
+        taskManager.updateTask(task);
+        assertEquals(List.of(task), taskManager.getTasksByStatus(TasksTypes.TASK, Status.DONE),
+                "Обновление статуса задачи не попало в индекс");
+        assertEquals(0, taskManager.getTasksCount(TasksTypes.TASK, Status.NEW), "Задача осталась в старом статусе");
+
+        taskManager.deleteSubtaskById(subtask1.getId());
+        assertEquals(1, taskManager.getTasksCount(TasksTypes.SUBTASK), "Удаление подзадачи не попало в индекс");
+        assertEquals(List.of(epic), taskManager.getTasksByStatus(TasksTypes.EPIC, Status.DONE),
+                "Пересчет статуса эпика не попал в индекс");
+
+        taskManager.clearSubtasks();
+        assertEquals(0, taskManager.getTasksCount(TasksTypes.SUBTASK), "Подзадачи остались в индексе");
+        assertEquals(1, taskManager.getTasksCount(TasksTypes.EPIC, Status.NEW), "Некорректный статус пустого эпика");
+
+        taskManager.clearEpics();
+        taskManager.deleteTaskById(task.getId());
+        for (TasksTypes type : TasksTypes.values()) {
+            assertEquals(0, taskManager.getTasksCount(type), "Удаленные задачи остались в индексе");
+        }
+    }
+
+    @Test
+    void timeGridMatchesIntervalChecks() {
+        InMemoryTaskManager gridManager = new InMemoryTaskManager();
+        LocalDateTime origin = LocalDateTime.parse("2024-01-01T00:00:00");
+        gridManager.enableTimeGrid(origin, Duration.ofMinutes(15), Duration.ofDays(7));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            Task task = new Task("Задача " + i, "Тестовая задача");
+            //Часть задач выходит за горизонт сетки
+            task.setStartTime(origin.plusMinutes(random.nextInt(9 * 24 * 60) - 24 * 60));
+            task.setDuration(Duration.ofMinutes(1 + random.nextInt(120)));
+
+            assertEquals(taskManager.isTasksOverlapped(task), gridManager.isTasksOverlapped(task),
+                    "Проверка по сетке не совпадает с проверкой по интервалам");
+            if (!taskManager.isTasksOverlapped(task)) {
+                taskManager.createTask(task);
+                Task gridTask = new Task(task.getTaskName(), task.getTaskDescription());
+                gridTask.setStartTime(task.getStartTime());
+                gridTask.setDuration(task.getDuration());
+                gridManager.createTask(gridTask);
+            }
+            if (i % 5 == 0 && !taskManager.getTasks().isEmpty()) {
+                int id = taskManager.getTasks().get(random.nextInt(taskManager.getTasks().size())).getId();
+                taskManager.deleteTaskById(id);
+                gridManager.deleteTaskById(id);
+            }
+        }
+        assertEquals(taskManager.getTasks().size(), gridManager.getTasks().size(), "Наборы задач различаются");
+    }
+
+    @Test
+    void primitiveTimeFieldsKeepGettersWorking() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        Epic epic = new Epic("Эпик 1", "Тестовый эпик 1");
+        manager.createEpic(epic);
+        Subtask subtask = new Subtask("Подзадача 1", new String("Тестовая задача".toCharArray()), epic.getId());
+        subtask.setStartTime(LocalDateTime.parse("2024-05-22T21:21:21.250"));
+        subtask.setDuration(Duration.ofHours(3));
+        manager.createSubtask(subtask);
+        Task task = new Task("Задача 1", new String("Тестовая задача".toCharArray()));
+        task.setStartTime(LocalDateTime.parse("2024-05-23T10:00:00"));
+        task.setDuration(Duration.ofMinutes(90));
+        manager.createTask(task);
+
+        Task stored = manager.getTaskById(task.getId());
+        assertEquals(LocalDateTime.parse("2024-05-23T10:00:00"), stored.getStartTime(), "Некорректное время начала");
+        assertEquals(Duration.ofMinutes(90), stored.getDuration(), "Некорректная длительность");
+        assertEquals(LocalDateTime.parse("2024-05-23T11:30:00"), stored.getEndTime(), "Некорректное время окончания");
+        assertSame(stored.getTaskDescription(), manager.getSubtaskById(subtask.getId()).getTaskDescription(),
+                "Одинаковые строки не разделяются");
+
+        //Доли секунды подзадачи сохраняются в датах эпика и в его снимке
+        Epic storedEpic = manager.getEpicById(epic.getId());
+        assertEquals(LocalDateTime.parse("2024-05-22T21:21:21.250"), storedEpic.getStartTime(),
+                "Некорректное время начала эпика");
+        assertEquals(LocalDateTime.parse("2024-05-23T00:21:21.250"), storedEpic.getEndTime(),
+                "Некорректное время окончания эпика");
+        Epic snapshot = new Epic(storedEpic);
+        assertEquals(storedEpic.getStartTime(), snapshot.getStartTime(), "Снимок эпика теряет время начала");
+        assertEquals(storedEpic.getEndTime(), snapshot.getEndTime(), "Снимок эпика теряет время окончания");
+
+        Task overlapping = new Task("Задача 2", "Тестовая задача");
+        overlapping.setStartTime(LocalDateTime.parse("2024-05-23T11:29:00"));
+        overlapping.setDuration(Duration.ofMinutes(10));
+        assertTrue(manager.isTasksOverlapped(overlapping), "Пересечение с задачей не обнаружено");
+    }
+
+    @Test
+    void tasksWithSameStartSecondAreKeptInOrder() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        LocalDateTime start = LocalDateTime.parse("2024-05-23T10:00:00");
+        Task later = new Task("Задача 1", "Тестовая задача");
+        later.setStartTime(start.plusNanos(500_000_000));
+        manager.createTask(later);
+        Task earlier = new Task("Задача 2", "Тестовая задача");
+        earlier.setStartTime(start);
+        manager.createTask(earlier);
+        Task sameStart = new Task("Задача 3", "Тестовая задача");
+        sameStart.setStartTime(start);
+        manager.createTask(sameStart);
+
+        assertEquals(List.of(earlier.getId(), sameStart.getId(), later.getId()),
+                manager.getPrioritizedTasks().stream().map(Task::getId).toList(),
+                "Задачи с началом в одну секунду потеряны или упорядочены неверно");
+        assertEquals(start.plusNanos(500_000_000), manager.getTaskById(later.getId()).getStartTime(),
+                "Доли секунды начала потеряны");
+        assertEquals(List.of(later.getId()), manager.getTasksStartingAfter(start, 10).stream()
+                .map(Task::getId).toList(), "Некорректный выбор задач после момента времени");
+
+        //Задачи с одинаковым началом не разрываются между страницами
+        TimelinePage page = manager.getTimelinePage(null, 1);
+        assertEquals(List.of(earlier.getId(), sameStart.getId()), page.tasks().stream().map(Task::getId).toList(),
+                "Задача с тем же началом пропущена при постраничном обходе");
+        page = manager.getTimelinePage(page.nextCursor(), 1);
+        assertEquals(List.of(later.getId()), page.tasks().stream().map(Task::getId).toList(),
+                "Некорректная вторая страница");
+        assertFalse(page.hasNext(), "Лишняя страница после последней задачи");
+
+        manager.deleteTaskById(sameStart.getId());
+        assertEquals(List.of(earlier.getId(), later.getId()),
+                manager.getPrioritizedTasks().stream().map(Task::getId).toList(),
+                "Удалена не та задача из сортированного списка");
+    }
+
+    @Test
+    void columnarStoreAggregates() {
+        InMemoryTaskManager columnarManager = new InMemoryTaskManager();
+        Task task = new Task("Задача 1", "Тестовая задача 1");
+        task.setStartTime(LocalDateTime.parse("2024-05-20T10:00:00"));
+        task.setDuration(Duration.ofMinutes(30));
+        columnarManager.createTask(task);
+        ColumnarTaskStore store = columnarManager.enableColumnarStore();
+
+        Epic epic = new Epic("Эпик 1", "Тестовый эпик 1");
+        columnarManager.createEpic(epic);
+        Subtask subtask1 = new Subtask("Подзадача 1", "Тестовая подзадача 1", epic.getId());
+        subtask1.setTaskStatus(Status.DONE);
+        subtask1.setStartTime(LocalDateTime.parse("2024-05-26T23:00:00"));
+        subtask1.setDuration(Duration.ofMinutes(45));
+        columnarManager.createSubtask(subtask1);
+        Subtask subtask2 = new Subtask("Подзадача 2", "Тестовая подзадача 2", epic.getId());
+        subtask2.setStartTime(LocalDateTime.parse("2024-05-27T09:00:00"));
+        subtask2.setDuration(Duration.ofMinutes(15));
+        columnarManager.createSubtask(subtask2);
+
+        assertEquals(60, store.sumDurationMinutes(TasksTypes.SUBTASK), "Некорректная сумма длительностей");
+        assertEquals(60, store.sumDurationMinutes(TasksTypes.EPIC), "Длительность эпика не обновлена");
+        assertEquals(1, store.countByStatus(TasksTypes.SUBTASK)[Status.DONE.ordinal()],
+                "Некорректный подсчет по статусам");
+        assertEquals(1, store.countByStatus(TasksTypes.EPIC)[Status.IN_PROGRESS.ordinal()],
+                "Статус эпика не обновлен");
+        assertEquals(Map.of(LocalDate.parse("2024-05-20"), 1, LocalDate.parse("2024-05-27"), 1),
+                store.countByWeek(TasksTypes.SUBTASK), "Некорректная разбивка по неделям");
+
+        Task view = store.getTask(subtask2.getId());
+        assertEquals(subtask2.getTaskName(), view.getTaskName(), "Некорректное название в представлении");
+        assertEquals(subtask2.getStartTime(), view.getStartTime(), "Некорректное время в представлении");
+        assertEquals(epic.getId(), ((Subtask) view).getEpicId(), "Некорректный эпик в представлении");
+
+        columnarManager.deleteEpicById(epic.getId());
+        assertEquals(1, store.size(), "Удаленные задачи остались в хранилище");
+        assertEquals(30, store.sumDurationMinutes(TasksTypes.TASK), "Некорректная сумма длительностей");
+    }
+
+}
@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntObjectHashMapTest {
+
+    @Test
+    void behavesLikeHashMap() {
+        IntObjectHashMap<String> map = new IntObjectHashMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        //Ключи, кратные 65536, попадают в одну цепочку и проверяют сдвиг при удалении
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(500) * (i % 2 == 0 ? 1 : 65536);
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i),
+                        "Некорректный результат добавления");
+                case 1 -> assertEquals(expected.remove(key), map.remove(key), "Некорректный результат удаления");
+                default -> assertEquals(expected.get(key), map.get(key), "Некорректный результат поиска");
+            }
+            assertEquals(expected.size(), map.size(), "Некорректный размер");
+        }
+        assertEquals(expected, map, "Содержимое отличается от HashMap");
+    }
+
+    @Test
+    void sequentialIdsAreIteratedInOrder() {
+        IntObjectHashMap<String> map = new IntObjectHashMap<>();
+        for (int id = 5; id >= 1; id--) {
+            map.put(id, "Задача " + id);
+        }
+        map.remove(3);
+
+        assertEquals(List.of(1, 2, 4, 5), List.copyOf(map.keySet()), "Некорректный порядок обхода");
+        assertThrows(NullPointerException.class, () -> map.put(6, null), "Значение null не отклонено");
+    }
+
+    @Test
+    void valuesSpliteratorSplitsWithoutLosingElements() {
+        IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+        long expectedSum = 0;
+        for (int i = 1; i <= 10_000; i++) {
+            map.put(i * 7, Integer.valueOf(i));
+            expectedSum += i;
+        }
+
+        Spliterator<Integer> first = map.values().spliterator();
+        Spliterator<Integer> second = first.trySplit();
+        assertNotNull(second, "Сплитератор не разделился");
+        long[] sum = new long[1];
+        first.forEachRemaining(value -> sum[0] += value);
+        second.forEachRemaining(value -> sum[0] += value);
+        assertEquals(expectedSum, sum[0], "При делении потеряны элементы");
+        assertEquals(expectedSum, map.values().parallelStream().mapToLong(Integer::longValue).sum(),
+                "Параллельный обход потерял элементы");
+    }
+}
@@ -0,0 +1,255 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapTaskManagerTest {
+
+    TaskManager taskManager;
+
+    @BeforeEach
+    void beforeEach() {
+        taskManager = Managers.getOffHeap();
+    }
+
+    @Test
+    void tasksAreMaterializedCopies() {
+        Task task = new Task("Задача 1", "Тестовая задача 1");
+        task.setStartTime(LocalDateTime.parse("2024-07-15T21:21:21"));
+        task.setDuration(Duration.ofHours(3));
+        taskManager.createTask(task);
+
+        Task stored = taskManager.getTaskById(task.getId());
+        assertNotSame(task, stored, "Менеджер вернул сохраненный объект");
+        assertEquals("Тестовая задача 1", stored.getTaskDescription(), "Описание задачи не сохранено");
+        assertEquals(task.getEndTime(), stored.getEndTime(), "Время задачи не сохранено");
+
+        stored.setTaskStatus(Status.DONE);
+        assertEquals(Status.NEW, taskManager.getTaskById(task.getId()).getTaskStatus(),
+                "Изменение возвращенной задачи попало в хранилище");
+        taskManager.updateTask(stored);
+        assertEquals(Status.DONE, taskManager.getTaskById(task.getId()).getTaskStatus(), "Задача не обновлена");
+        assertEquals(1, taskManager.getTasksCount(TasksTypes.TASK, Status.DONE), "Счетчик статусов не обновлен");
+    }
+
+    @Test
+    void epicIsCalculatedFromStoredSubtasks() {
+        Epic epic = new Epic("Эпик 1", "Тестовый эпик 1");
+        taskManager.createEpic(epic);
+        Subtask first = new Subtask("Подзадача 1", "Тестовая подзадача 1", epic.getId());
+        first.setStartTime(LocalDateTime.parse("2024-05-22T21:21:21"));
+        first.setDuration(Duration.ofDays(1));
+        taskManager.createSubtask(first);
+        Subtask second = new Subtask("Подзадача 2", "Тестовая подзадача 2", epic.getId());
+        second.setTaskStatus(Status.DONE);
+        second.setStartTime(LocalDateTime.parse("2024-05-25T21:21:21"));
+        second.setDuration(Duration.ofDays(2));
+        taskManager.createSubtask(second);
+
+        Epic stored = taskManager.getEpicById(epic.getId());
+        assertEquals(Status.IN_PROGRESS, stored.getTaskStatus(), "Некорректный расчет статуса эпика");
+        assertEquals(first.getStartTime(), stored.getStartTime(), "Некорректное начало эпика");
+        assertEquals(second.getEndTime(), stored.getEndTime(), "Некорректное окончание эпика");
+        assertEquals(List.of(first.getId(), second.getId()),
+                taskManager.getSubtasksOfEpic(epic.getId()).stream().map(Task::getId).toList(),
+                "Подзадачи эпика должны идти в порядке создания");
+
+        taskManager.deleteSubtaskById(first.getId());
+        assertEquals(Status.DONE, taskManager.getEpicById(epic.getId()).getTaskStatus(),
+                "Статус эпика не пересчитан после удаления подзадачи");
+        assertEquals(1, taskManager.getTasksCount(TasksTypes.EPIC, Status.DONE), "Счетчик статусов эпиков не обновлен");
+
+        taskManager.deleteEpicById(epic.getId());
+        assertTrue(taskManager.getSubtasks().isEmpty(), "Подзадачи не удалены вместе с эпиком");
+        assertTrue(taskManager.getPrioritizedTasks().isEmpty(), "Подзадачи остались в сортированном списке");
+    }
+
+    @Test
+    void epicDatesFollowSubtaskChanges() {
+        TaskManager inMemory = Managers.getDefault();
+        LocalDateTime start = LocalDateTime.parse("2024-05-20T10:00:00");
+        for (TaskManager manager : List.of(inMemory, taskManager)) {
+            manager.createEpic(new Epic("Эпик 1", "Тестовый эпик 1"));
+            for (int i = 0; i < 3; i++) {
+                Subtask subtask = new Subtask("Подзадача " + i, "Тестовая подзадача " + i, 1);
+                subtask.setStartTime(start.plusDays(i));
+                subtask.setDuration(Duration.ofHours(i + 1));
+                manager.createSubtask(subtask);
+            }
+            manager.createSubtask(new Subtask("Подзадача без времени", "Тестовая подзадача", 1));
+        }
+        assertSameEpicDates(inMemory, "после создания подзадач");
+
+        //Крайние подзадачи уходят: начало и окончание пересчитываются по оставшимся
+        for (TaskManager manager : List.of(inMemory, taskManager)) {
+            Subtask first = manager.getSubtaskById(2);
+            first.setStartTime(start.plusDays(5));
+            manager.updateSubtask(first);
+        }
+        assertSameEpicDates(inMemory, "после переноса первой подзадачи");
+        for (TaskManager manager : List.of(inMemory, taskManager)) {
+            manager.deleteSubtaskById(2);
+        }
+        assertSameEpicDates(inMemory, "после удаления последней подзадачи");
+        for (TaskManager manager : List.of(inMemory, taskManager)) {
+            manager.deleteSubtaskById(3);
+            manager.deleteSubtaskById(4);
+        }
+        assertSameEpicDates(inMemory, "после удаления подзадач со временем");
+        for (TaskManager manager : List.of(inMemory, taskManager)) {
+            manager.clearSubtasks();
+        }
+        assertNull(taskManager.getEpicById(1).getStartTime(), "Начало эпика осталось после очистки подзадач");
+        assertNull(taskManager.getEpicById(1).getDuration(), "Длительность эпика осталась после очистки подзадач");
+    }
+
+    @Test
+    void startNanosAreStored() {
+        Task task = new Task("Задача 1", "Тестовая задача 1");
+        task.setStartTime(LocalDateTime.parse("2024-07-15T21:21:21.123456789"));
+        task.setDuration(Duration.ofMinutes(15));
+        taskManager.createTask(task);
+
+        assertEquals(task.getStartTime(), taskManager.getTaskById(task.getId()).getStartTime(),
+                "Доли секунды начала задачи потеряны");
+    }
+
+    private void assertSameEpicDates(TaskManager inMemory, String stage) {
+        Epic expected = inMemory.getEpicById(1);
+        Epic actual = taskManager.getEpicById(1);
+        assertEquals(expected.getStartTime(), actual.getStartTime(), "Некорректное начало эпика " + stage);
+        assertEquals(expected.getEndTime(), actual.getEndTime(), "Некорректное окончание эпика " + stage);
+        assertEquals(expected.getDuration(), actual.getDuration(), "Некорректная длительность эпика " + stage);
+        assertEquals(expected.getTaskStatus(), actual.getTaskStatus(), "Некорректный статус эпика " + stage);
+    }
+
+    @Test
+    void matchesInMemoryManager() {
+        TaskManager inMemory = Managers.getDefault();
+        LocalDateTime start = LocalDateTime.parse("2024-01-01T00:00:00");
+        for (int i = 0; i < 200; i++) {
+            for (TaskManager manager : List.of(inMemory, taskManager)) {
+                Task task = new Task("Задача " + i, "Тестовая задача " + i);
+                task.setStartTime(start.plusHours(i * 5L));
+                task.setDuration(Duration.ofHours(1 + i % 4));
+                manager.createTask(task);
+            }
+        }
+        for (int i = 0; i < 200; i += 3) {
+            inMemory.deleteTaskById(i + 1);
+            taskManager.deleteTaskById(i + 1);
+        }
+
+        for (int hour = 0; hour < 1000; hour += 7) {
+            //Начало окна сразу после конца задачи проверяет отступ от границы интервала
+            LocalDateTime from = start.plusHours(hour).plusMinutes(hour % 2 == 0 ? 13 : 60).plusSeconds(hour % 3 * 30);
+            assertEquals(inMemory.findFreeSlot(from, Duration.ofHours(2)),
+                    taskManager.findFreeSlot(from, Duration.ofHours(2)), "Свободные окна не совпадают");
+            Task probe = new Task("Проверка", "Проверка пересечений");
+            probe.setStartTime(from);
+            probe.setDuration(Duration.ofMinutes(30));
+            assertEquals(inMemory.isTasksOverlapped(probe), taskManager.isTasksOverlapped(probe),
+                    "Проверка пересечений не совпадает");
+        }
+        assertEquals(inMemory.getTasksBetween(start.plusDays(3), start.plusDays(10)).stream().map(Task::getId).toList(),
+                taskManager.getTasksBetween(start.plusDays(3), start.plusDays(10)).stream().map(Task::getId).toList(),
+                "Выбор задач по интервалу не совпадает");
+    }
+
+    @Test
+    void largeIndexMatchesInMemoryManager() {
+        TaskManager inMemory = Managers.getDefault();
+        LocalDateTime start = LocalDateTime.parse("2024-01-01T00:00:00");
+        for (TaskManager manager : List.of(inMemory, taskManager)) {
+            //Одиночные вставки делят блоки индекса, пакет вливается в уже заполненный индекс
+            for (int i = 0; i < 1500; i++) {
+                Task task = new Task("Задача " + i, "Тестовая задача " + i);
+                task.setStartTime(start.plusHours(i * 7L % 3000 * 2));
+                task.setDuration(Duration.ofMinutes(10 + i % 5 * 10));
+                manager.createTask(task);
+            }
+            List<Task> batch = new ArrayList<>();
+            for (int i = 0; i < 1500; i++) {
+                Task task = new Task("Пакетная задача " + i, "Тестовая задача пакета " + i);
+                task.setStartTime(start.plusHours(i * 2L + 1));
+                task.setDuration(Duration.ofMinutes(10 + i % 3 * 20));
+                batch.add(task);
+            }
+            manager.createAll(batch);
+            //Удаления опустошают и сливают блоки
+            for (int id = 1; id <= 3000; id++) {
+                if (id % 3 != 0 || id > 2000 && id < 2600) {
+                    manager.deleteTaskById(id);
+                }
+            }
+        }
+
+        assertEquals(inMemory.getPrioritizedTasks().stream().map(Task::getId).toList(),
+                taskManager.getPrioritizedTasks().stream().map(Task::getId).toList(), "Порядок задач не совпадает");
+        for (int hour = 0; hour < 6100; hour += 13) {
+            LocalDateTime from = start.plusHours(hour).plusMinutes(hour % 60);
+            assertEquals(inMemory.findFreeSlot(from, Duration.ofMinutes(90)),
+                    taskManager.findFreeSlot(from, Duration.ofMinutes(90)), "Свободные окна не совпадают");
+            Task probe = new Task("Проверка", "Проверка пересечений");
+            probe.setStartTime(from);
+            probe.setDuration(Duration.ofMinutes(45));
+            assertEquals(inMemory.getOverlappingTasks(probe).stream().map(Task::getId).toList(),
+                    taskManager.getOverlappingTasks(probe).stream().map(Task::getId).toList(),
+                    "Пересекающиеся задачи не совпадают");
+        }
+
+        List<Integer> pagedIds = new ArrayList<>();
+        TimelinePage page = taskManager.getTimelinePage(null, 100);
+        pagedIds.addAll(page.tasks().stream().map(Task::getId).toList());
+        while (page.hasNext()) {
+            page = taskManager.getTimelinePage(page.nextCursor(), 100);
+            pagedIds.addAll(page.tasks().stream().map(Task::getId).toList());
+        }
+        assertEquals(inMemory.getPrioritizedTasks().stream().map(Task::getId).toList(), pagedIds,
+                "Постраничный обход не совпадает с сортированным списком");
+        assertThrows(IllegalArgumentException.class, () -> taskManager.getTimelinePage(null, 0),
+                "Нулевой размер страницы принят");
+    }
+
+    @Test
+    void stringsSurviveArenaGrowthAndCompaction() {
+        Task task = new Task("Задача", "Описание");
+        taskManager.createTask(task);
+        String description = "";
+        for (int i = 0; i < 500; i++) {
+            description = "Описание версии " + i + " ".repeat(i % 50);
+            Task update = new Task("Задача " + i, description);
+            update.setId(task.getId());
+            taskManager.updateTask(update);
+        }
+
+        assertEquals("Задача 499", taskManager.getTaskById(task.getId()).getTaskName(), "Название задачи потеряно");
+        assertEquals(description, taskManager.getTaskById(task.getId()).getTaskDescription(),
+                "Описание задачи потеряно");
+    }
+
+    @Test
+    void viewsReadStoreLazily() {
+        Epic epic = new Epic("Эпик 1", "Тестовый эпик 1");
+        taskManager.createEpic(epic);
+        Collection<Subtask> subtasksView = taskManager.getSubtasksOfEpicView(epic.getId());
+        Set<Task> prioritizedTasks = taskManager.getPrioritizedTasks();
+        assertTrue(subtasksView.isEmpty(), "Подзадачи эпика появились до создания");
+
+        Subtask subtask = new Subtask("Подзадача 1", "Тестовая подзадача 1", epic.getId());
+        subtask.setStartTime(LocalDateTime.parse("2024-05-22T21:21:21"));
+        taskManager.createSubtask(subtask);
+        assertEquals(List.of(subtask.getId()), subtasksView.stream().map(Task::getId).toList(),
+                "Представление подзадач не отражает изменения");
+        assertEquals(1, prioritizedTasks.size(), "Сортированный список не отражает изменения");
+        assertEquals(2, taskManager.getEpicsView().size() + taskManager.getSubtasksView().size(),
+                "Некорректный размер представлений");
+    }
+}
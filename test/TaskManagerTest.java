@@ -5,6 +5,9 @@ import org.junit.jupiter.params.provider.MethodSource;
 import java.io.File;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -20,7 +23,7 @@ public class TaskManagerTest {
         assertNotNull(taskManager.getEpics().getFirst(), "Эпик не создан");
         assertNotNull(taskManager.getSubtasks().getFirst(), "Подзадача не создана");
 
-        assertEquals(taskManager.getPrioritizedTasks().stream().toList().getFirst().startTime,
+        assertEquals(taskManager.getPrioritizedTasks().stream().toList().getFirst().getStartTime(),
                 LocalDateTime.parse("2024-05-22T21:21:21"),
                 "Некорректная сортировка задач по времени начала");
 
@@ -46,7 +49,7 @@ public class TaskManagerTest {
         taskManager.createTask(task3);
         task3.setDuration(Duration.ofDays(2));
         taskManager.updateTask(task3);
-        assertEquals(taskManager.getTaskById(task3.getId()).duration.toDays(), 2,
+        assertEquals(taskManager.getTaskById(task3.getId()).getDuration().toDays(), 2,
                 "Задачи обновляются некорректно");
 
         taskManager.getEpics().getFirst().getSubtasks().forEach(subtask -> {
@@ -63,6 +66,229 @@ public class TaskManagerTest {
 
     }
 
+    @ParameterizedTest
+    @MethodSource("provideParameters")
+    void timeRangeQueries(TaskManager taskManager) {
+        generateTestData(taskManager);
+
+        assertEquals(List.of(LocalDateTime.parse("2024-07-15T21:21:21"), LocalDateTime.parse("2024-08-15T21:21:21")),
+                startTimes(taskManager.getTasksBetween(LocalDateTime.parse("2024-06-01T00:00:00"),
+                        LocalDateTime.parse("2024-08-22T21:21:21"))),
+                "Некорректный выбор задач по интервалу времени");
+        assertEquals(List.of(LocalDateTime.parse("2024-08-15T21:21:21")),
+                startTimes(taskManager.getTasksStartingAfter(LocalDateTime.parse("2024-07-15T21:21:21"), 1)),
+                "Некорректный выбор задач после момента времени");
+
+        List<LocalDateTime> pagedStartTimes = new ArrayList<>();
+        TimelinePage page = taskManager.getTimelinePage(null, 3);
+        pagedStartTimes.addAll(startTimes(page.tasks()));
+        assertTrue(page.hasNext(), "Потеряна следующая страница");
+        page = taskManager.getTimelinePage(page.nextCursor(), 3);
+        pagedStartTimes.addAll(startTimes(page.tasks()));
+        assertFalse(page.hasNext(), "Лишняя страница после последней задачи");
+        assertEquals(startTimes(List.copyOf(taskManager.getPrioritizedTasks())), pagedStartTimes,
+                "Постраничный обход не совпадает с сортированным списком");
+
+        //Пустая страница неотличима от конца ленты, поэтому неположительный размер отклоняется
+        assertThrows(IllegalArgumentException.class, () -> taskManager.getTimelinePage(null, 0),
+                "Нулевой размер страницы принят");
+        assertThrows(IllegalArgumentException.class,
+                () -> taskManager.getTimelinePage(LocalDateTime.parse("2024-06-01T00:00:00"), -1),
+                "Отрицательный размер страницы принят");
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideParameters")
+    void updatesDoNotLeavePhantomIntervals(TaskManager taskManager) {
+        Epic epic = new Epic("Эпик 1", "Тестовый эпик 1");
+        taskManager.createEpic(epic);
+        Subtask subtask = new Subtask("Подзадача 1", "Тестовая подзадача 1", epic.getId());
+        subtask.setStartTime(LocalDateTime.parse("2025-03-01T10:00:00"));
+        subtask.setDuration(Duration.ofHours(1));
+        taskManager.createSubtask(subtask);
+
+        //Обновление несуществующей подзадачи ничего не добавляет в индексы времени
+        Subtask unknown = new Subtask("Подзадача 2", "Неизвестная подзадача", epic.getId());
+        unknown.setId(1000);
+        unknown.setStartTime(LocalDateTime.parse("2025-03-02T10:00:00"));
+        unknown.setDuration(Duration.ofHours(1));
+        taskManager.updateSubtask(unknown);
+        Task probe = new Task("Проверка", "Проверка пересечений");
+        probe.setStartTime(LocalDateTime.parse("2025-03-02T10:30:00"));
+        probe.setDuration(Duration.ofMinutes(10));
+        assertFalse(taskManager.isTasksOverlapped(probe), "Несуществующая подзадача попала в индекс интервалов");
+        assertEquals(1, taskManager.getPrioritizedTasks().size(), "Несуществующая подзадача попала в сортированный список");
+
+        //Замена эпика убирает интервалы подзадач прежнего эпика
+        Epic replacement = new Epic("Эпик 1", "Обновленный эпик 1");
+        replacement.setId(epic.getId());
+        taskManager.updateEpic(replacement);
+        probe.setStartTime(LocalDateTime.parse("2025-03-01T10:30:00"));
+        assertFalse(taskManager.isTasksOverlapped(probe), "Интервал подзадачи замененного эпика остался в индексе");
+        assertTrue(taskManager.getPrioritizedTasks().isEmpty(), "Подзадача замененного эпика осталась в списке");
+        taskManager.createTask(probe);
+        assertEquals(1, taskManager.getTasks().size(), "Задача на месте удаленной подзадачи не создана");
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideParameters")
+    void scheduleTasksInFreeSlots(TaskManager taskManager) {
+        generateTestData(taskManager);
+
+        //Задача 1 занимает 15.07 21:21:21 - 18.07 21:21:21
+        LocalDateTime slot = taskManager.findFreeSlot(LocalDateTime.parse("2024-07-16T00:00:00"), Duration.ofDays(1));
+        assertEquals(LocalDateTime.parse("2024-07-18T21:22:21"), slot, "Некорректное свободное окно");
+        assertEquals(LocalDateTime.parse("2024-06-01T00:00:00"),
+                taskManager.findFreeSlot(LocalDateTime.parse("2024-06-01T00:00:00"), Duration.ofDays(1)),
+                "Свободное время должно использоваться сразу");
+
+        //Окно отступает от конца интервала, только если упирается в него
+        Task boundaryTask = new Task("Задача на границе", "Тестовая задача");
+        boundaryTask.setStartTime(LocalDateTime.parse("2024-10-01T09:00:00"));
+        boundaryTask.setDuration(Duration.ofHours(1));
+        taskManager.createTask(boundaryTask);
+        assertEquals(LocalDateTime.parse("2024-10-01T10:00:30"),
+                taskManager.findFreeSlot(LocalDateTime.parse("2024-10-01T10:00:30"), Duration.ofHours(1)),
+                "Отступ добавлен к окну, которое начинается после конца задачи");
+        assertEquals(LocalDateTime.parse("2024-10-01T10:01:00"),
+                taskManager.findFreeSlot(LocalDateTime.parse("2024-10-01T10:00:00"), Duration.ofHours(1)),
+                "Окно не отступило от конца задачи");
+
+        //from меньше чем через step после конца задачи: промежуток короче duration + step, но окно в нем помещается
+        //Отдельные менеджеры проверяют случай без других задач, когда оба интервала попадают в одно поддерево
+        List<TaskManager> managers = List.of(taskManager, Managers.getDefault(), Managers.getOffHeap());
+        for (TaskManager manager : managers) {
+            Task before = new Task("Задача до окна", "Тестовая задача");
+            before.setStartTime(LocalDateTime.parse("2025-01-01T00:00:00"));
+            before.setDuration(Duration.ofMinutes(10));
+            manager.createTask(before);
+            Task after = new Task("Задача после окна", "Тестовая задача");
+            after.setStartTime(LocalDateTime.parse("2025-01-01T01:00:50"));
+            after.setDuration(Duration.ofMinutes(5));
+            manager.createTask(after);
+        }
+        LocalDateTime nearEnd = LocalDateTime.parse("2025-01-01T00:10:30");
+        for (TaskManager manager : managers) {
+            assertEquals(nearEnd, manager.findFreeSlot(nearEnd, Duration.ofMinutes(50)),
+                    "Пропущено свободное окно сразу после конца задачи");
+        }
+
+        Task task = new Task("Задача 3", "Тестовая задача 3");
+        task.setDuration(Duration.ofDays(30));
+        taskManager.scheduleTask(task, LocalDateTime.parse("2024-07-01T00:00:00"));
+        assertEquals(LocalDateTime.parse("2024-08-23T21:22:21"), task.getStartTime(),
+                "Задача размещена не в первое подходящее окно");
+        assertTrue(taskManager.isTaskExists(task.getId()), "Размещенная задача не создана");
+
+        List<Task> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Task batchTask = new Task("Пакетная задача " + i, "Тестовая задача");
+            batchTask.setDuration(Duration.ofHours(1));
+            batch.add(batchTask);
+        }
+        taskManager.scheduleTasks(batch, LocalDateTime.parse("2024-07-18T20:00:00"));
+        for (int i = 1; i < batch.size(); i++) {
+            assertEquals(batch.get(i - 1).getEndTime().plus(InMemoryTaskManager.SLOT_STEP),
+                    batch.get(i).getStartTime(), "Задачи пакета размещены не вплотную");
+        }
+        assertFalse(batch.stream().anyMatch(taskManager::isTasksOverlapped), "Задачи пакета пересекаются");
+
+        //Пакет с ошибкой не размещается частично
+        int tasksCount = taskManager.getTasks().size();
+        Task validTask = new Task("Пакетная задача", "Тестовая задача");
+        validTask.setDuration(Duration.ofHours(1));
+        Subtask orphan = new Subtask("Подзадача без эпика", "Тестовая подзадача", 1000);
+        orphan.setDuration(Duration.ofHours(1));
+        assertThrows(IllegalArgumentException.class,
+                () -> taskManager.scheduleTasks(List.of(validTask, orphan), LocalDateTime.parse("2024-07-18T20:00:00")),
+                "Пакет с подзадачей без эпика размещен");
+        assertEquals(tasksCount, taskManager.getTasks().size(), "Пакет размещен частично");
+        assertNull(validTask.getStartTime(), "Время задачи неразмещенного пакета не восстановлено");
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideParameters")
+    void batchOperations(TaskManager taskManager) {
+        generateTestData(taskManager);
+        Epic epic = taskManager.getEpics().getFirst();
+        int tasksCount = taskManager.getTasks().size();
+
+        //Пересечение внутри пакета: пакет не применяется целиком
+        Task first = new Task("Пакетная задача 1", "Тестовая задача");
+        first.setStartTime(LocalDateTime.parse("2024-09-01T10:00:00"));
+        first.setDuration(Duration.ofHours(2));
+        Task second = new Task("Пакетная задача 2", "Тестовая задача");
+        second.setStartTime(LocalDateTime.parse("2024-09-01T11:00:00"));
+        second.setDuration(Duration.ofHours(2));
+        assertThrows(RuntimeException.class, () -> taskManager.createAll(List.of(first, second)),
+                "Пересечение внутри пакета не обнаружено");
+        assertEquals(tasksCount, taskManager.getTasks().size(), "Пакет применен частично");
+
+        second.setStartTime(LocalDateTime.parse("2024-09-01T13:00:00"));
+        Subtask subtask = new Subtask("Пакетная подзадача", "Тестовая подзадача", epic.getId());
+        subtask.setTaskStatus(Status.DONE);
+        subtask.setStartTime(LocalDateTime.parse("2024-09-02T10:00:00"));
+        subtask.setDuration(Duration.ofHours(1));
+        taskManager.createAll(List.of(first, second, subtask));
+        assertEquals(first.getId() + 1, second.getId(), "id пакета выделены не подряд");
+        assertEquals(tasksCount + 2, taskManager.getTasks().size(), "Задачи пакета не созданы");
+        assertEquals(4, taskManager.getSubtasksOfEpic(epic.getId()).size(), "Подзадача пакета не добавлена в эпик");
+
+        //Задачи пакета меняются местами: проверка идет по новому положению
+        Task movedFirst = new Task("Пакетная задача 1", "Тестовая задача");
+        movedFirst.setId(first.getId());
+        movedFirst.setStartTime(second.getStartTime());
+        movedFirst.setDuration(Duration.ofHours(2));
+        Task movedSecond = new Task("Пакетная задача 2", "Тестовая задача");
+        movedSecond.setId(second.getId());
+        movedSecond.setStartTime(first.getStartTime());
+        movedSecond.setDuration(Duration.ofHours(2));
+        taskManager.updateAll(List.of(movedFirst, movedSecond));
+        assertEquals(second.getStartTime(), taskManager.getTaskById(first.getId()).getStartTime(),
+                "Задачи пакета не обновлены");
+
+        Task missing = new Task("Задача", "Несуществующая задача");
+        missing.setId(1000);
+        assertThrows(IllegalArgumentException.class, () -> taskManager.updateAll(List.of(movedFirst, missing)),
+                "Обновление несуществующей задачи не отклонено");
+
+        taskManager.deleteAll(List.of(first.getId(), subtask.getId(), 1000));
+        assertFalse(taskManager.isTaskExists(first.getId()), "Задача пакета не удалена");
+        assertFalse(taskManager.isSubtaskExists(subtask.getId()), "Подзадача пакета не удалена");
+        assertEquals(Status.IN_PROGRESS, taskManager.getEpicById(epic.getId()).getTaskStatus(),
+                "Статус эпика не пересчитан после удаления");
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideParameters")
+    void readOnlyLiveViews(TaskManager taskManager) {
+        generateTestData(taskManager);
+        Collection<Task> tasksView = taskManager.getTasksView();
+        Epic epic = taskManager.getEpicsView().iterator().next();
+        Collection<Subtask> subtasksView = taskManager.getSubtasksView();
+
+        assertThrows(UnsupportedOperationException.class, () -> tasksView.add(new Task("Задача", "Тестовая задача")),
+                "Представление задач можно изменить");
+        assertThrows(UnsupportedOperationException.class, () -> subtasksView.clear(),
+                "Представление подзадач можно изменить");
+        assertThrows(UnsupportedOperationException.class, () -> taskManager.getPrioritizedTasks().clear(),
+                "Сортированный список можно изменить снаружи");
+
+        taskManager.createTask(new Task("Задача 3", "Тестовая задача 3"));
+        assertEquals(3, tasksView.size(), "Представление задач не отражает изменения");
+        assertEquals(3, taskManager.getSubtasksOfEpicView(epic.getId()).size(), "Некорректное представление подзадач эпика");
+
+        List<Integer> visitedIds = new ArrayList<>();
+        taskManager.forEachTask(task -> visitedIds.add(task.getId()));
+        assertEquals(7, visitedIds.size(), "Обход затронул не все задачи");
+        assertEquals(subtasksView.stream().mapToInt(Task::getId).sum(),
+                subtasksView.parallelStream().mapToInt(Task::getId).sum(), "Параллельный обход потерял подзадачи");
+    }
+
+    private List<LocalDateTime> startTimes(List<Task> tasks) {
+        return tasks.stream().map(Task::getStartTime).toList();
+    }
+
     private void generateTestData(TaskManager taskManager) {
         Task task1 = new Task(
                 "Задача 1",
@@ -112,6 +338,7 @@ public class TaskManagerTest {
         assertTrue(tmpFile.exists(), "Файл не создан");
 
         return Stream.of(Arguments.of(Managers.getDefault()),
+                Arguments.of(Managers.getConcurrent()),
                 Arguments.of(FileBackedTaskManager.loadFromFile(tmpFile.toPath())));
     }
 }